@@ -0,0 +1,472 @@
+package main;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * measures the sorting algorithms more reliably than the loops of Tester1 and Tester2: the inputs are generated
+ * once per configuration and copied into the array before every iteration outside of the timed region, a number of
+ * warmup iterations lets the JIT compile the code first, the times are taken with nanoTime as longs, and the output
+ * is only checked after the timed region. For every configuration, the mean and standard deviation of the time, the
+ * throughput, the bytes allocated per sort and the scaling efficiency relative to one core are reported.
+ * The parallel algorithms run on a ParallelSorter that is created once per number of cores, so thread start-up isn't
+ * measured and the allocations of its threads can be counted.
+ * Arguments are given as key=value, for example
+ * sizes=1e3,1e6 threads=1,2,4 distributions=RANDOM,ZIPF algorithms=QUICK_SORT,PARALLEL_QUICK_SORT_MORE_P
+ * warmup=5 iterations=10 file=data/bench.bin fileMiB=512 ramMiB=64 blockMiB=8
+ */
+public class Benchmark {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    /**
+     * how the elements of the input arrays are distributed
+     */
+    public enum Distribution {
+        // a random permutation of 0..n - 1
+        RANDOM,
+        SORTED,
+        REVERSED,
+        // only 16 different elements
+        FEW_UNIQUE,
+        // Zipf distribution with exponent 1, so a few elements make up most of the array
+        ZIPF
+    }
+
+    /**
+     * the in-memory entry points of Sorter that are measured
+     */
+    public enum Algorithm {
+        QUICK_SORT(false),
+        MERGE_SORT(false),
+        ADAPTIVE_MERGE_SORT(false),
+        RADIX_SORT(false),
+        PARALLEL_QUICK_SORT(true),
+        PARALLEL_QUICK_SORT_MORE_P(true),
+        PARALLEL_MERGE_SORT(true),
+        PARALLEL_MERGE_SORT_MORE_P(true),
+        PARALLEL_ADAPTIVE_MERGE_SORT(true),
+        SAMPLE_SORT(true),
+        PARALLEL_RADIX_SORT(true);
+
+        private final boolean parallel;
+
+        Algorithm(boolean parallel) {
+            this.parallel = parallel;
+        }
+
+        /**
+         * @param a
+         * @param sorter used by the parallel algorithms
+         * @return the sorted array
+         * @throws InterruptedException
+         */
+        int[] sort(int[] a, ParallelSorter sorter) throws InterruptedException {
+            switch (this) {
+                case QUICK_SORT:
+                    return Sorter.quickSort(a);
+                case MERGE_SORT:
+                    return Sorter.mergeSort(a);
+                case ADAPTIVE_MERGE_SORT:
+                    return Sorter.adaptiveMergeSort(a);
+                case RADIX_SORT:
+                    return Sorter.radixSort(a);
+                case PARALLEL_QUICK_SORT:
+                    return sorter.quickSort(a, false);
+                case PARALLEL_QUICK_SORT_MORE_P:
+                    return sorter.quickSort(a, true);
+                case PARALLEL_MERGE_SORT:
+                    return sorter.mergeSort(a, a.length, false);
+                case PARALLEL_MERGE_SORT_MORE_P:
+                    return sorter.mergeSort(a, a.length, true);
+                case PARALLEL_ADAPTIVE_MERGE_SORT:
+                    return sorter.adaptiveMergeSort(a);
+                case SAMPLE_SORT:
+                    return sorter.sampleSort(a);
+                default:
+                    return sorter.radixSort(a);
+            }
+        }
+    }
+
+    /**
+     * the measurements of one configuration
+     */
+    public static class Result {
+        private final String name;
+        private final long n;
+        private final int p;
+        private final double meanNanos;
+        private final double stdDevNanos;
+        private final double allocatedBytes;
+
+        Result(String name, long n, int p, long[] nanos, double allocatedBytes) {
+            this.name = name;
+            this.n = n;
+            this.p = p;
+            double sum = 0;
+            for (long t : nanos) {
+                sum += t;
+            }
+            meanNanos = sum / nanos.length;
+            double squares = 0;
+            for (long t : nanos) {
+                squares += (t - meanNanos) * (t - meanNanos);
+            }
+            stdDevNanos = Math.sqrt(squares / nanos.length);
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public double getMeanMillis() {
+            return meanNanos / 1e6;
+        }
+
+        /**
+         * @return sorted elements per second
+         */
+        public double getThroughput() {
+            return n / (meanNanos / 1e9);
+        }
+
+        /**
+         * @return the average number of bytes allocated per sort
+         */
+        public double getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        /**
+         * @param sequential the result of the same configuration with one core
+         * @return the speedup divided by the number of cores
+         */
+        public double getEfficiency(Result sequential) {
+            return sequential.meanNanos / meanNanos / p;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "%-45s n=%-11d p=%-3d %10.3f ms +- %8.3f  %12.0f elements/s  %12.0f B/op", name, n, p,
+                    getMeanMillis(), stdDevNanos / 1e6, getThroughput(), allocatedBytes);
+        }
+    }
+
+    /**
+     * a sort that is measured
+     */
+    public interface Sort {
+        void run() throws Exception;
+    }
+
+    private int warmup = 5;
+    private int iterations = 10;
+
+    public void setWarmup(int warmup) {
+        if (warmup < 0) {
+            throw new IllegalArgumentException("the number of warmup iterations can't be negative");
+        }
+        this.warmup = warmup;
+    }
+
+    public void setIterations(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("at least one iteration is needed");
+        }
+        this.iterations = iterations;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("arguments have to be given as key=value: " + arg);
+            }
+            options.put(option[0], option[1]);
+        }
+
+        Benchmark benchmark = new Benchmark();
+        benchmark.setWarmup(Integer.parseInt(options.getOrDefault("warmup", "5")));
+        benchmark.setIterations(Integer.parseInt(options.getOrDefault("iterations", "10")));
+        int cores = Runtime.getRuntime().availableProcessors();
+        int[] threads = parseInts(options.getOrDefault("threads", cores > 1 ? "1," + cores : "1"));
+
+        if (options.containsKey("file")) {
+            benchmark.fileSort(options.get("file"), Integer.parseInt(options.getOrDefault("fileMiB", "512")),
+                    parseInts(options.getOrDefault("ramMiB", "64")), parseInts(options.getOrDefault("blockMiB", "8")),
+                    threads);
+            return;
+        }
+
+        int[] sizes = parseInts(options.getOrDefault("sizes", "1e3,1e4,1e5,1e6,1e7"));
+        List<Distribution> distributions = new ArrayList<>();
+        for (String name : options.getOrDefault("distributions", "RANDOM,SORTED,REVERSED,FEW_UNIQUE,ZIPF")
+                .split(",")) {
+            distributions.add(Distribution.valueOf(name));
+        }
+        List<Algorithm> algorithms = new ArrayList<>();
+        if (options.containsKey("algorithms")) {
+            for (String name : options.get("algorithms").split(",")) {
+                algorithms.add(Algorithm.valueOf(name));
+            }
+        } else {
+            algorithms.addAll(Arrays.asList(Algorithm.values()));
+        }
+        benchmark.inMemory(algorithms, sizes, distributions, threads);
+    }
+
+    /**
+     * measures the algorithms for every combination of size, distribution and number of cores. The sequential
+     * algorithms are only run once per size and distribution
+     * @param algorithms
+     * @param sizes
+     * @param distributions
+     * @param threads numbers of cores
+     * @return the results
+     * @throws Exception
+     */
+    public List<Result> inMemory(List<Algorithm> algorithms, int[] sizes, List<Distribution> distributions,
+                                 int[] threads) throws Exception {
+        List<Result> results = new ArrayList<>();
+        for (int n : sizes) {
+            for (Distribution distribution : distributions) {
+                int[] input = generate(distribution, n, n);
+                int[] a = new int[n];
+                for (Algorithm algorithm : algorithms) {
+                    Result sequential = null;
+                    for (int p : algorithm.parallel ? threads : new int[] {1}) {
+                        try (ParallelSorter sorter = new ParallelSorter(p)) {
+                            String name = algorithm + " " + distribution;
+                            int[][] sorted = new int[1][];
+                            Result result = measure(name, n, p, () -> System.arraycopy(input, 0, a, 0, n),
+                                    () -> sorted[0] = algorithm.sort(a, sorter), () -> {
+                                        if (!Tester1.isSorted(sorted[0])) {
+                                            throw new IllegalStateException(name + " didn't sort the array");
+                                        }
+                                    });
+                            results.add(result);
+                            report(result, sequential);
+                            if (p == 1) {
+                                sequential = result;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * measures emMergeSort on a random file for every combination of RAM size, block size and number of cores. The
+     * file is copied before every iteration outside of the timed region, because emMergeSort overwrites its input
+     * @param fileName where the input is created, the copies and the output are stored next to it
+     * @param fileMiB size of the file in MiB
+     * @param ramSizes in MiB
+     * @param blockSizes in MiB
+     * @param threads numbers of cores
+     * @return the results
+     * @throws Exception
+     */
+    public List<Result> fileSort(String fileName, int fileMiB, int[] ramSizes, int[] blockSizes, int[] threads)
+            throws Exception {
+        String tmpFile = fileName + ".tmp";
+        String outFile = fileName + ".out";
+        Sorter.createRandomFile(fileName, fileMiB, Math.min(fileMiB, 64));
+        long n = new File(fileName).length() / Integer.BYTES;
+
+        List<Result> results = new ArrayList<>();
+        try {
+            for (int ramMiB : ramSizes) {
+                for (int blockMiB : blockSizes) {
+                    Result sequential = null;
+                    for (int p : threads) {
+                        Sorter sorter = new Sorter(ramMiB);
+                        sorter.setThreads(p);
+                        String name = "emMergeSort ram=" + ramMiB + "MiB block=" + blockMiB + "MiB";
+                        Result result = measure(name, n, p, () -> Files.copy(Paths.get(fileName), Paths.get(tmpFile),
+                                StandardCopyOption.REPLACE_EXISTING), () -> sorter.emMergeSort(tmpFile, outFile,
+                                blockMiB));
+                        results.add(result);
+                        report(result, sequential);
+                        if (p == 1) {
+                            sequential = result;
+                        }
+                    }
+                }
+            }
+        } finally {
+            Files.deleteIfExists(Paths.get(tmpFile));
+            Files.deleteIfExists(Paths.get(outFile));
+        }
+        return results;
+    }
+
+    /**
+     * same as measure(name, n, p, setup, sort, check) without checking the output
+     */
+    public Result measure(String name, long n, int p, Sort setup, Sort sort) throws Exception {
+        return measure(name, n, p, setup, sort, () -> {});
+    }
+
+    /**
+     * runs the warmup iterations and then times the measured ones. The bytes that taking the allocation counts
+     * allocates itself on this thread are measured on an empty region first and subtracted
+     * @param name
+     * @param n number of elements that are sorted
+     * @param p number of cores
+     * @param setup prepares the input before every iteration, not timed
+     * @param sort
+     * @param check verifies the output after every iteration, not timed
+     * @return the result
+     * @throws Exception
+     */
+    public Result measure(String name, long n, int p, Sort setup, Sort sort, Sort check) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            setup.run();
+            sort.run();
+            check.run();
+        }
+        long overhead = allocationOverhead();
+        long[] nanos = new long[iterations];
+        long allocated = 0;
+        for (int i = 0; i < iterations; i++) {
+            setup.run();
+            Map<Long, Long> before = allocatedBytes();
+            long start = System.nanoTime();
+            sort.run();
+            nanos[i] = System.nanoTime() - start;
+            allocated += Math.max(0, allocatedSince(before) - overhead);
+            check.run();
+        }
+        return new Result(name, n, p, nanos, (double) allocated / iterations);
+    }
+
+    private static void report(Result result, Result sequential) {
+        if (sequential == null) {
+            System.out.println(result);
+        } else {
+            System.out.println(result + String.format(Locale.ROOT, "  efficiency %.2f",
+                    result.getEfficiency(sequential)));
+        }
+    }
+
+    /**
+     * @return the bytes that allocatedBytes and allocatedSince count around a region that allocates nothing, the
+     * smallest of a few tries
+     */
+    private static long allocationOverhead() {
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            overhead = Math.min(overhead, allocatedSince(allocatedBytes()));
+        }
+        return overhead;
+    }
+
+    /**
+     * @return the bytes every live thread has allocated so far, by thread id. Empty if the JVM can't count them
+     */
+    private static Map<Long, Long> allocatedBytes() {
+        Map<Long, Long> bytes = new HashMap<>();
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            long[] ids = THREADS.getAllThreadIds();
+            long[] allocated = ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(ids);
+            for (int i = 0; i < ids.length; i++) {
+                bytes.put(ids[i], allocated[i]);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @param before as returned by allocatedBytes
+     * @return the bytes allocated since then by the threads that are still alive, threads started in the meantime
+     * are counted completely
+     */
+    private static long allocatedSince(Map<Long, Long> before) {
+        long sum = 0;
+        for (Map.Entry<Long, Long> entry : allocatedBytes().entrySet()) {
+            if (entry.getValue() >= 0) {
+                sum += entry.getValue() - Math.max(0, before.getOrDefault(entry.getKey(), 0L));
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @param distribution
+     * @param n
+     * @param seed
+     * @return an array of n elements with the given distribution
+     */
+    public static int[] generate(Distribution distribution, int n, long seed) {
+        Random rand = new Random(seed);
+        int[] a = new int[n];
+        switch (distribution) {
+            case RANDOM:
+                for (int i = 0; i < n; i++) {
+                    a[i] = i;
+                }
+                for (int i = n - 1; i > 0; i--) {
+                    Sorter.swap(a, i, rand.nextInt(i + 1));
+                }
+                break;
+            case SORTED:
+                for (int i = 0; i < n; i++) {
+                    a[i] = i;
+                }
+                break;
+            case REVERSED:
+                for (int i = 0; i < n; i++) {
+                    a[i] = n - i;
+                }
+                break;
+            case FEW_UNIQUE:
+                for (int i = 0; i < n; i++) {
+                    a[i] = rand.nextInt(16);
+                }
+                break;
+            default:
+                // inverse transform sampling over the cumulative weights 1 / rank
+                double[] cumulative = new double[Math.max(1, Math.min(n, 1 << 20))];
+                double sum = 0;
+                for (int rank = 0; rank < cumulative.length; rank++) {
+                    sum += 1.0 / (rank + 1);
+                    cumulative[rank] = sum;
+                }
+                for (int i = 0; i < n; i++) {
+                    int rank = Arrays.binarySearch(cumulative, rand.nextDouble() * sum);
+                    a[i] = rank >= 0 ? rank : -rank - 1;
+                }
+                break;
+        }
+        return a;
+    }
+
+    /**
+     * @param list comma separated, numbers may be written like 1e6
+     * @return the numbers
+     */
+    private static int[] parseInts(String list) {
+        String[] values = list.split(",");
+        int[] numbers = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            double value = Double.parseDouble(values[i]);
+            if (value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(values[i] + " is too large for an array");
+            }
+            numbers[i] = (int) value;
+        }
+        return numbers;
+    }
+}
@@ -0,0 +1,200 @@
+package main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * sparse index of a sorted file of records, which holds the key of the first record of every block. Since the block
+ * size is a multiple of the record size, every block starts with a record, so the block that may contain a key is
+ * found by a binary search over the index without touching the file
+ */
+public class BlockIndex {
+    // identifies index files, followed by a version number
+    private static final int MAGIC = 0x42494458;
+    private static final int VERSION = 1;
+
+    private final int blockSize;
+    private final int recordSize;
+    private final int keySize;
+    // length of the indexed file in bytes
+    private final long length;
+    private final long[] keys;
+
+    /**
+     * @param format
+     * @param blockSize in bytes, a multiple of the record size
+     * @param length of the indexed file in bytes
+     * @param keys the key of the first record of every block
+     */
+    public BlockIndex(RecordFormat format, int blockSize, long length, long[] keys) {
+        this(blockSize, format.getRecordSize(), format.getKeySize(), length, keys);
+    }
+
+    private BlockIndex(int blockSize, int recordSize, int keySize, long length, long[] keys) {
+        if (blockSize <= 0 || blockSize % recordSize != 0) {
+            throw new IllegalArgumentException("the block size has to be a positive multiple of the record size");
+        }
+        if (keys.length != blocks(length, blockSize)) {
+            throw new IllegalArgumentException("the index needs one key per block");
+        }
+        this.blockSize = blockSize;
+        this.recordSize = recordSize;
+        this.keySize = keySize;
+        this.length = length;
+        this.keys = keys;
+    }
+
+    /**
+     * @param dataFile
+     * @return the file the index of the sorted file is saved in
+     */
+    public static File forFile(File dataFile) {
+        return new File(dataFile.getPath() + ".index");
+    }
+
+    /**
+     * @param length in bytes
+     * @param blockSize in bytes
+     * @return the number of blocks of a file of the given length
+     */
+    public static int blocks(long length, int blockSize) {
+        long blocks = (length + blockSize - 1) / blockSize;
+        if (blocks > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("the block size is too small to index the file");
+        }
+        return (int) blocks;
+    }
+
+    /**
+     * creates the index of a sorted file that already exists, which takes one positioned read per block
+     * @param dataFile
+     * @param format
+     * @param blockSize in bytes, a multiple of the record size
+     * @return the index
+     * @throws IOException
+     */
+    public static BlockIndex build(File dataFile, RecordFormat format, int blockSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            long[] keys = new long[blocks(length, blockSize)];
+            ByteBuffer key = ByteBuffer.allocate(format.getKeySize());
+            for (int b = 0; b < keys.length; b++) {
+                key.clear();
+                long position = (long) b * blockSize;
+                while (key.hasRemaining()) {
+                    if (channel.read(key, position + key.position()) < 0) {
+                        throw new IOException("the file ends inside a record");
+                    }
+                }
+                keys[b] = format.key(key, 0);
+            }
+            return new BlockIndex(format, blockSize, length, keys);
+        }
+    }
+
+    /**
+     * reads in an index that was saved with save
+     * @param file
+     * @return the index
+     * @throws IOException
+     */
+    public static BlockIndex load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file + " is no block index");
+            }
+            int blockSize = in.readInt();
+            int recordSize = in.readInt();
+            int keySize = in.readInt();
+            long length = in.readLong();
+            long[] keys = new long[in.readInt()];
+            for (int b = 0; b < keys.length; b++) {
+                keys[b] = in.readLong();
+            }
+            return new BlockIndex(blockSize, recordSize, keySize, length, keys);
+        }
+    }
+
+    /**
+     * writes the index to the file, which is only replaced once the new index is complete
+     * @param file
+     * @throws IOException
+     */
+    public void save(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(blockSize);
+            out.writeInt(recordSize);
+            out.writeInt(keySize);
+            out.writeLong(length);
+            out.writeInt(keys.length);
+            for (long key : keys) {
+                out.writeLong(key);
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public int getRecordSize() {
+        return recordSize;
+    }
+
+    public int getKeySize() {
+        return keySize;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * @return the number of blocks of the indexed file
+     */
+    public int getBlocks() {
+        return keys.length;
+    }
+
+    /**
+     * @param block
+     * @return the key of the first record of the block
+     */
+    public long getKey(int block) {
+        return keys[block];
+    }
+
+    /**
+     * @param key
+     * @return the last block that starts with a smaller key, 0 if there is none. The first record with a key
+     * greater than or equal to the given key lies inside this block, or else it is the first record of the next one
+     */
+    public int findBlock(long key) {
+        int start = 0;
+        int end = keys.length;
+        while (start < end) {
+            int b = (start + end) >>> 1;
+            if (keys[b] < key) {
+                start = b + 1;
+            } else {
+                end = b;
+            }
+        }
+        return Math.max(0, start - 1);
+    }
+}
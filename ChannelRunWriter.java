@@ -0,0 +1,98 @@
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * writes a data run through a FileChannel from a direct ByteBuffer, so the output block doesn't have to be copied
+ * out of the Java heap before it is written
+ */
+public class ChannelRunWriter implements RunWriter {
+    private final FileChannel channel;
+    private final ByteBuffer block;
+    private final IntBuffer buffer;
+    private int pos = 0;
+    // position inside the file the next block is written to, in bytes
+    private long position;
+
+    /**
+     * @param file is truncated before writing
+     * @param blockSize in bytes
+     * @throws IOException
+     */
+    public ChannelRunWriter(File file, int blockSize) throws IOException {
+        this(FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING), 0, blockSize);
+    }
+
+    /**
+     * creates a writer that uses positioned writes starting at the given position and leaves the rest of the file
+     * untouched, so several writers can fill disjoint regions of the same file at once
+     * @param file
+     * @param position in bytes
+     * @param blockSize in bytes
+     * @throws IOException
+     */
+    public ChannelRunWriter(File file, long position, int blockSize) throws IOException {
+        this(FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE), position,
+                blockSize);
+    }
+
+    private ChannelRunWriter(FileChannel channel, long position, int blockSize) {
+        this.channel = channel;
+        this.position = position;
+        block = ByteBuffer.allocateDirect(blockSize);
+        buffer = block.asIntBuffer();
+    }
+
+    @Override
+    public void write(int element) throws IOException {
+        buffer.put(pos++, element);
+        if (pos == buffer.capacity()) {
+            flush();
+        }
+    }
+
+    @Override
+    public void write(int[] a, int from, int n) throws IOException {
+        while (n > 0) {
+            int length = Math.min(n, buffer.capacity() - pos);
+            buffer.put(pos, a, from, length);
+            pos += length;
+            from += length;
+            n -= length;
+            if (pos == buffer.capacity()) {
+                flush();
+            }
+        }
+    }
+
+    @Override
+    public long endRun() {
+        return position + (long) pos * Integer.BYTES;
+    }
+
+    @Override
+    public void sync() throws IOException {
+        flush();
+    }
+
+    private void flush() throws IOException {
+        block.limit(pos * Integer.BYTES).position(0);
+        while (block.hasRemaining()) {
+            position += channel.write(block, position);
+        }
+        block.clear();
+        pos = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+}
@@ -0,0 +1,105 @@
+package main;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * reads a data run that was written by CompressedRunWriter, decoding one block at a time
+ */
+public class CompressedRunReader implements RunReader {
+    private final LimitedStream stream;
+    private final DeltaCodec codec;
+    private final int width;
+    private final int[] block;
+    private final byte[] encoded;
+    private int size = 0;
+    private int pos = 0;
+
+    /**
+     * @param file
+     * @param run
+     * @param blockSize size of an uncompressed block in bytes, has to match the one of the writer
+     * @param format
+     * @throws IOException
+     */
+    public CompressedRunReader(File file, Run run, int blockSize, RecordFormat format) throws IOException {
+        this(file, run, blockSize, format, null);
+    }
+
+    /**
+     * @param file
+     * @param run
+     * @param blockSize size of an uncompressed block in bytes, has to match the one of the writer
+     * @param format
+     * @param stats receives the latency of the block reads, may be null
+     * @throws IOException
+     */
+    public CompressedRunReader(File file, Run run, int blockSize, RecordFormat format, SortStats stats)
+            throws IOException {
+        stream = new LimitedStream(new FileInputStream(file));
+        stream.setStats(stats);
+        stream.setCompressed(true);
+        stream.skipNBytes(run.getStart());
+        stream.initialize(Integer.MAX_VALUE, blockSize, run.getLength());
+        codec = new DeltaCodec(format);
+        width = format.getWidth();
+        block = new int[blockSize / Integer.BYTES];
+        encoded = new byte[codec.getMaxBlockSize(blockSize / format.getRecordSize())];
+        readBlock();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return pos < size;
+    }
+
+    @Override
+    public int peek() {
+        return block[pos];
+    }
+
+    @Override
+    public int peek(int offset) {
+        return block[pos + offset];
+    }
+
+    @Override
+    public int next() throws IOException {
+        int element = block[pos];
+        if (++pos == size) {
+            readBlock();
+        }
+        return element;
+    }
+
+    @Override
+    public int read(int[] a, int from, int n) throws IOException {
+        int read = 0;
+        while (read < n && hasNext()) {
+            int length = Math.min(n - read, size - pos);
+            System.arraycopy(block, pos, a, from + read, length);
+            read += length;
+            pos += length;
+            if (pos == size) {
+                readBlock();
+            }
+        }
+        return read;
+    }
+
+    private void readBlock() throws IOException {
+        pos = 0;
+        if (!stream.readBlock(encoded)) {
+            size = 0;
+            return;
+        }
+        codec.decode(encoded, stream.getLastBlockRecords(), stream.getLastBlockFirstKey(), block);
+        size = stream.getLastBlockRecords() * width;
+    }
+
+    @Override
+    public void close() throws IOException {
+        stream.close();
+    }
+}
@@ -0,0 +1,93 @@
+package main;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * writes a data run as blocks compressed by DeltaCodec. Every run starts with a new block, so a reader can start at
+ * the beginning of any run
+ */
+public class CompressedRunWriter implements RunWriter {
+    private final OutputStream out;
+    private final DeltaCodec codec;
+    private final int width;
+    private final int[] block;
+    private final byte[] encoded;
+    private int pos = 0;
+    // position of the stream inside the file, in bytes
+    private long position;
+
+    /**
+     * @param out
+     * @param blockSize size of an uncompressed block in bytes, a multiple of the record size
+     * @param format
+     */
+    public CompressedRunWriter(OutputStream out, int blockSize, RecordFormat format) {
+        this(out, blockSize, format, 0);
+    }
+
+    /**
+     * @param out
+     * @param blockSize size of an uncompressed block in bytes, a multiple of the record size
+     * @param format
+     * @param position of the stream inside the file, in bytes, if it appends to existing data
+     */
+    public CompressedRunWriter(OutputStream out, int blockSize, RecordFormat format, long position) {
+        this.out = out;
+        this.position = position;
+        codec = new DeltaCodec(format);
+        width = format.getWidth();
+        block = new int[blockSize / Integer.BYTES];
+        encoded = new byte[codec.getMaxBlockSize(blockSize / format.getRecordSize())];
+    }
+
+    @Override
+    public void write(int element) throws IOException {
+        block[pos++] = element;
+        if (pos == block.length) {
+            flush();
+        }
+    }
+
+    @Override
+    public void write(int[] a, int from, int n) throws IOException {
+        while (n > 0) {
+            int length = Math.min(n, block.length - pos);
+            System.arraycopy(a, from, block, pos, length);
+            pos += length;
+            from += length;
+            n -= length;
+            if (pos == block.length) {
+                flush();
+            }
+        }
+    }
+
+    @Override
+    public long endRun() throws IOException {
+        flush();
+        return position;
+    }
+
+    @Override
+    public void sync() throws IOException {
+        flush();
+        out.flush();
+    }
+
+    private void flush() throws IOException {
+        if (pos == 0) {
+            return;
+        }
+        int length = codec.encode(block, pos / width, encoded);
+        out.write(encoded, 0, length);
+        position += length;
+        pos = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        out.close();
+    }
+}
@@ -0,0 +1,109 @@
+package main;
+
+import java.nio.ByteBuffer;
+
+/**
+ * compresses blocks of sorted records. The keys are stored as the difference to their predecessor, encoded as a
+ * varint with 7 bits per byte, while the payload is copied unchanged. Every block starts with a header of HEADER_SIZE
+ * bytes holding the length of the encoded data, the number of records and the key of the first record, so a reader
+ * can skip a whole block without decoding it
+ */
+public class DeltaCodec {
+    public static final int HEADER_SIZE = 2 * Integer.BYTES + Long.BYTES;
+
+    private final RecordFormat format;
+
+    public DeltaCodec(RecordFormat format) {
+        this.format = format;
+    }
+
+    /**
+     * @param records
+     * @return the maximal size of a block of that many records, including the header
+     */
+    public int getMaxBlockSize(int records) {
+        return getMaxBlockSize(records, format);
+    }
+
+    /**
+     * @param records
+     * @param format
+     * @return the maximal size of a block of that many records of the format, including the header
+     */
+    public static int getMaxBlockSize(int records, RecordFormat format) {
+        // the difference of two keys has as many bits as a key, which take 7 bits per byte and a spare byte
+        int maxVarintBytes = (8 * format.getKeySize() + 6) / 7 + 1;
+        return HEADER_SIZE + records * (maxVarintBytes + format.getRecordSize() - format.getKeySize());
+    }
+
+    /**
+     * encodes the records a[0..n) as a block including its header
+     * @param a
+     * @param n number of records
+     * @param out has to hold at least getMaxBlockSize(n) bytes
+     * @return the size of the block in bytes
+     */
+    public int encode(int[] a, int n, byte[] out) {
+        int w = format.getWidth();
+        int keyInts = format.getKeySize() / Integer.BYTES;
+        ByteBuffer buffer = ByteBuffer.wrap(out);
+        long first = n > 0 ? format.key(a, 0) : 0;
+        long last = first;
+
+        buffer.position(HEADER_SIZE);
+        for (int i = 0; i < n * w; i += w) {
+            long key = format.key(a, i);
+            // the keys are sorted, so the difference is non-negative when interpreted as an unsigned number
+            long delta = key - last;
+            while ((delta & ~0x7FL) != 0) {
+                buffer.put((byte) ((delta & 0x7F) | 0x80));
+                delta >>>= 7;
+            }
+            buffer.put((byte) delta);
+            last = key;
+
+            for (int j = i + keyInts; j < i + w; j++) {
+                buffer.putInt(a[j]);
+            }
+        }
+
+        int length = buffer.position();
+        buffer.putInt(0, length - HEADER_SIZE);
+        buffer.putInt(Integer.BYTES, n);
+        buffer.putLong(2 * Integer.BYTES, first);
+        return length;
+    }
+
+    /**
+     * decodes the data of a block, which follows its header
+     * @param in
+     * @param records number of records, as stored in the header
+     * @param firstKey as stored in the header
+     * @param a receives the records
+     */
+    public void decode(byte[] in, int records, long firstKey, int[] a) {
+        int w = format.getWidth();
+        int keyInts = format.getKeySize() / Integer.BYTES;
+        ByteBuffer buffer = ByteBuffer.wrap(in);
+        int pos = 0;
+        long key = firstKey;
+
+        for (int i = 0; i < records * w; i += w) {
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = in[pos++];
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            key += delta;
+            format.setKey(a, i, key);
+
+            for (int j = i + keyInts; j < i + w; j++) {
+                a[j] = buffer.getInt(pos);
+                pos += Integer.BYTES;
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package main;
+
+import java.io.IOException;
+
+/**
+ * passes the elements on to another writer and picks out the key of every record that starts a block of the output
+ * file on the way, so the BlockIndex of the sorted file is built while it is written
+ */
+public class IndexingRunWriter implements RunWriter {
+    private final RunWriter out;
+    private final int keySize;
+    private final int blockSize;
+    // receives the key of the first record of block b at index b
+    private final long[] keys;
+    // position of the next element inside the output file, in bytes
+    private long position;
+
+    /**
+     * @param out
+     * @param format
+     * @param blockSize of the index in bytes, a multiple of the record size
+     * @param position where out starts writing inside the file, in bytes, at the start of a record
+     * @param keys one entry per block of the file, may be shared by several writers of disjoint parts of the file
+     */
+    public IndexingRunWriter(RunWriter out, RecordFormat format, int blockSize, long position, long[] keys) {
+        this.out = out;
+        this.keySize = format.getKeySize();
+        this.blockSize = blockSize;
+        this.position = position;
+        this.keys = keys;
+    }
+
+    @Override
+    public void write(int element) throws IOException {
+        if (position % blockSize < keySize) {
+            addKey(element);
+        }
+        position += Integer.BYTES;
+        out.write(element);
+    }
+
+    @Override
+    public void write(int[] a, int from, int n) throws IOException {
+        int i = 0;
+        while (i < n) {
+            long offset = position % blockSize;
+            if (offset < keySize) {
+                addKey(a[from + i]);
+                position += Integer.BYTES;
+                i++;
+            } else {
+                // jump to the start of the next block
+                int skip = (int) Math.min(n - i, (blockSize - offset) / Integer.BYTES);
+                position += (long) skip * Integer.BYTES;
+                i += skip;
+            }
+        }
+        out.write(a, from, n);
+    }
+
+    /**
+     * adds an int of the key of the record that starts the current block
+     * @param element
+     */
+    private void addKey(int element) {
+        int block = (int) (position / blockSize);
+        if (keySize == Integer.BYTES) {
+            keys[block] = element;
+        } else if (position % blockSize == 0) {
+            keys[block] = (long) element << 32;
+        } else {
+            keys[block] |= element & 0xffffffffL;
+        }
+    }
+
+    @Override
+    public long endRun() throws IOException {
+        return out.endRun();
+    }
+
+    @Override
+    public void sync() throws IOException {
+        out.sync();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
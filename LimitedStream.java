@@ -13,6 +13,15 @@ public class LimitedStream extends DataInputStream {
     private boolean hitLimit = false;
     private int blockSize = 0;
     private int blocksRead = 0;
+    private int lastBlockLength = 0;
+    private long byteLimit = Long.MAX_VALUE;
+    private long bytesRead = 0;
+    // whether every block starts with a header as written by DeltaCodec, the block size is only an upper bound then
+    private boolean compressed = false;
+    private int lastBlockRecords = 0;
+    private long lastBlockFirstKey = 0;
+    // receives the latency of every block that is read, null if it isn't measured
+    private SortStats stats;
 
     /**
      * Creates a DataInputStream that uses the specified
@@ -25,35 +34,149 @@ public class LimitedStream extends DataInputStream {
     }
 
     public void initialize(int limit, int blockSize) {
+        initialize(limit, blockSize, Long.MAX_VALUE);
+    }
+
+    /**
+     * same as initialize(limit, blockSize), but additionally stops after byteLimit bytes, so data runs don't have
+     * to consist of whole blocks
+     * @param limit in blocks
+     * @param blockSize
+     * @param byteLimit
+     */
+    public void initialize(int limit, int blockSize, long byteLimit) {
         this.limit = limit;
         this.blockSize = blockSize;
-        blocksRead = 0;
-        hitLimit = false;
+        this.byteLimit = byteLimit;
+        resetCounter();
     }
 
     /**
-     * reads in one block of memory, using the respective block size, and stores it in array
+     * switches to compressed blocks, which have a variable length that is stored in their header
+     * @param compressed
+     */
+    public void setCompressed(boolean compressed) {
+        this.compressed = compressed;
+    }
+
+    /**
+     * measures how long every block takes to be read
+     * @param stats
+     */
+    public void setStats(SortStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * reads in one block of memory, using the respective block size, and stores it in array. The last block of
+     * the stream may be shorter than the array, see {@link #getLastBlockLength()}. For compressed blocks, only the
+     * encoded data following the header is stored
      * @param array
-     * @return
+     * @return whether a block could be read
      * @throws IOException
      */
     public boolean readBlock(byte[] array) throws IOException {
+        if (stats == null) {
+            return readNextBlock(array);
+        }
+        long start = System.nanoTime();
+        boolean read = readNextBlock(array);
+        if (read) {
+            stats.recordBlockRead(System.nanoTime() - start, lastBlockLength);
+        }
+        return read;
+    }
+
+    private boolean readNextBlock(byte[] array) throws IOException {
+        if (compressed) {
+            if (!readHeader()) {
+                return false;
+            }
+            readBody(array);
+            return true;
+        }
         if (blocksRead >= limit) {
             hitLimit = true;
             return false;
         }
+        lastBlockLength = readNBytes(array, 0, (int) Math.min(array.length, byteLimit - bytesRead));
+        if (lastBlockLength == 0) {
+            hitLimit = true;
+            return false;
+        }
+        blocksRead++;
+        bytesRead += lastBlockLength;
+        return true;
+    }
+
+    /**
+     * reads the header of the next compressed block. Afterwards, either readBody or skipBody has to be called
+     * @return whether there is another block
+     * @throws IOException
+     */
+    public boolean readHeader() throws IOException {
+        if (blocksRead >= limit || bytesRead >= byteLimit) {
+            hitLimit = true;
+            return false;
+        }
         try {
-            readFully(array);
+            lastBlockLength = readInt();
         } catch (EOFException e) {
             hitLimit = true;
             return false;
         }
-        blocksRead++;
+        lastBlockRecords = readInt();
+        lastBlockFirstKey = readLong();
+        bytesRead += DeltaCodec.HEADER_SIZE;
         return true;
     }
 
+    /**
+     * reads the encoded data of the compressed block whose header was read last
+     * @param array
+     * @throws IOException
+     */
+    public void readBody(byte[] array) throws IOException {
+        readFully(array, 0, lastBlockLength);
+        bytesRead += lastBlockLength;
+        blocksRead++;
+    }
+
+    /**
+     * skips the encoded data of the compressed block whose header was read last
+     * @throws IOException
+     */
+    public void skipBody() throws IOException {
+        skipNBytes(lastBlockLength);
+        bytesRead += lastBlockLength;
+        blocksRead++;
+    }
+
+    /**
+     * @return the number of bytes the last call to readBlock has stored in the array, or the length of the encoded
+     * data of the last compressed block
+     */
+    public int getLastBlockLength() {
+        return lastBlockLength;
+    }
+
+    /**
+     * @return the number of records inside the last compressed block
+     */
+    public int getLastBlockRecords() {
+        return lastBlockRecords;
+    }
+
+    /**
+     * @return the key of the first record inside the last compressed block
+     */
+    public long getLastBlockFirstKey() {
+        return lastBlockFirstKey;
+    }
+
     public void resetCounter() {
         blocksRead = 0;
+        bytesRead = 0;
         hitLimit = false;
     }
 
@@ -62,12 +185,21 @@ public class LimitedStream extends DataInputStream {
     }
 
     /**
-     * skips over n blocks in the data stream
+     * skips over n blocks in the data stream. Compressed blocks are skipped one by one using their headers
      * @param n
      * @return
      * @throws IOException
      */
     public boolean skipNBlocks(long n) throws IOException {
+        if (compressed) {
+            for (long i = 0; i < n; i++) {
+                if (!readHeader()) {
+                    return false;
+                }
+                skipBody();
+            }
+            return true;
+        }
         try {
             skipNBytes(n * blockSize);
         } catch (EOFException e) {
@@ -0,0 +1,124 @@
+package main;
+
+/**
+ * tournament tree which determines the smallest current element of k sorted sequences. Every inner node stores the
+ * loser of the match between its two subtrees, so after the winner is replaced only the matches on the path from its
+ * leaf to the root have to be replayed, which takes log k comparisons
+ */
+public class LoserTree {
+    private final int k;
+    private final long[] keys;
+    private final boolean[] exhausted;
+    // tree[0] holds the overall winner, tree[1] to tree[k - 1] the losers of the inner nodes. The leaves are the
+    // implicit nodes k to 2k - 1
+    private final int[] tree;
+
+    /**
+     * @param k the number of sequences
+     */
+    public LoserTree(int k) {
+        this.k = k;
+        keys = new long[k];
+        exhausted = new boolean[k];
+        tree = new int[k];
+    }
+
+    /**
+     * sets the first element of the i-th sequence, has to be called before build
+     * @param i
+     * @param key
+     */
+    public void set(int i, long key) {
+        keys[i] = key;
+        exhausted[i] = false;
+    }
+
+    /**
+     * marks the i-th sequence as empty, has to be called before build
+     * @param i
+     */
+    public void setExhausted(int i) {
+        exhausted[i] = true;
+    }
+
+    /**
+     * plays all matches once the first elements of the sequences are set
+     */
+    public void build() {
+        tree[0] = build(1);
+    }
+
+    private int build(int node) {
+        if (node >= k) {
+            return node - k;
+        }
+        int left = build(2 * node);
+        int right = build(2 * node + 1);
+        if (beats(left, right)) {
+            tree[node] = right;
+            return left;
+        }
+        tree[node] = left;
+        return right;
+    }
+
+    /**
+     * @return whether all sequences are exhausted
+     */
+    public boolean isEmpty() {
+        return exhausted[tree[0]];
+    }
+
+    /**
+     * @return index of the sequence holding the smallest current element
+     */
+    public int winner() {
+        return tree[0];
+    }
+
+    public long winnerKey() {
+        return keys[tree[0]];
+    }
+
+    /**
+     * replaces the current element of the winning sequence by its next element
+     * @param key
+     */
+    public void replaceWinner(long key) {
+        keys[tree[0]] = key;
+        replay();
+    }
+
+    /**
+     * marks the winning sequence as exhausted
+     */
+    public void removeWinner() {
+        exhausted[tree[0]] = true;
+        replay();
+    }
+
+    private void replay() {
+        int winner = tree[0];
+        for (int node = (winner + k) / 2; node >= 1; node /= 2) {
+            if (beats(tree[node], winner)) {
+                int tmp = tree[node];
+                tree[node] = winner;
+                winner = tmp;
+            }
+        }
+        tree[0] = winner;
+    }
+
+    /**
+     * @param i
+     * @param j
+     * @return whether the current element of sequence i is smaller than the one of sequence j. Exhausted sequences
+     * lose every match and ties are won by the sequence with the smaller index
+     */
+    private boolean beats(int i, int j) {
+        if (exhausted[i] || exhausted[j]) {
+            return !exhausted[i];
+        }
+        return keys[i] < keys[j] || (keys[i] == keys[j] && i < j);
+    }
+}
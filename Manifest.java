@@ -0,0 +1,219 @@
+package main;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * the progress of EM-MergeSort, which is saved in a small properties file after every data run and every round, so
+ * an interrupted sort can be resumed. It holds the data runs of the last completed round together with the file
+ * they are stored in, and the runs that have been written so far in the current round. For every run, the start and
+ * the length in bytes, which is the byte limit of its LimitedStream, and the number of records are stored
+ */
+public class Manifest {
+    private final File file;
+    // identifies the arguments of the sort, a manifest that was saved with others is ignored
+    private final String parameters;
+    // size of the input file, which is only used by the run formation
+    private final long inputLength;
+    // number of the current round, 0 is the run formation
+    private int round = 0;
+    // file with the data runs of the last completed round, null during the run formation
+    private File source;
+    private List<Run> sourceRuns = new ArrayList<>();
+    private boolean sourceCompressed = false;
+    // data runs of the current round that are completely written
+    private List<Run> written = new ArrayList<>();
+    // how far the input of the current round has been consumed: in bytes during the run formation, in data runs
+    // during a merge round
+    private long position = 0;
+
+    /**
+     * @param file
+     * @param parameters
+     * @param inputLength in bytes
+     */
+    public Manifest(File file, String parameters, long inputLength) {
+        this.file = file;
+        this.parameters = parameters;
+        this.inputLength = inputLength;
+    }
+
+    /**
+     * reads in a manifest that was saved by an interrupted sort
+     * @param file
+     * @param parameters
+     * @param input the input file of the sort
+     * @param output the output file of the sort
+     * @return the manifest, or null if there is none, it was saved with other parameters or the files it refers to
+     * have changed in the meantime
+     * @throws IOException
+     */
+    public static Manifest load(File file, String parameters, File input, File output) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        }
+        if (!parameters.equals(properties.getProperty("parameters"))) {
+            return null;
+        }
+
+        Manifest manifest = new Manifest(file, parameters, Long.parseLong(properties.getProperty("inputLength")));
+        manifest.round = Integer.parseInt(properties.getProperty("round"));
+        if (manifest.round == 0) {
+            if (input.length() != manifest.inputLength) {
+                return null;
+            }
+        } else {
+            manifest.source = new File(properties.getProperty("source"));
+            manifest.sourceCompressed = Boolean.parseBoolean(properties.getProperty("sourceCompressed"));
+            manifest.sourceRuns = readRuns(properties, "source");
+            if (manifest.source.length() < end(manifest.sourceRuns)) {
+                return null;
+            }
+        }
+
+        // the runs of the current round are written to the other file
+        File target = manifest.source == null || manifest.source.equals(input) ? output : input;
+        manifest.written = readRuns(properties, "written");
+        manifest.position = Long.parseLong(properties.getProperty("position"));
+        if (target.length() < end(manifest.written)) {
+            // the current round has to be started over
+            manifest.written = new ArrayList<>();
+            manifest.position = 0;
+        }
+        return manifest;
+    }
+
+    /**
+     * @param outFile the output file of the sort
+     * @return the file the manifest of the sort is saved in
+     */
+    public static File forOutput(File outFile) {
+        return new File(outFile.getPath() + ".manifest");
+    }
+
+    public int getRound() {
+        return round;
+    }
+
+    public File getSource() {
+        return source;
+    }
+
+    public List<Run> getSourceRuns() {
+        return sourceRuns;
+    }
+
+    public boolean isSourceCompressed() {
+        return sourceCompressed;
+    }
+
+    public List<Run> getWritten() {
+        return written;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * records that another data run of the current round has been written and saves the manifest
+     * @param written all data runs of the current round that are completely written
+     * @param position how far the input of the current round has been consumed
+     * @throws IOException
+     */
+    public void saveProgress(List<Run> written, long position) throws IOException {
+        this.written = new ArrayList<>(written);
+        this.position = position;
+        save();
+    }
+
+    /**
+     * records that the current round is completed and saves the manifest
+     * @param file contains the data runs of the round
+     * @param runs
+     * @param compressed whether the runs are compressed
+     * @throws IOException
+     */
+    public void completeRound(File file, List<Run> runs, boolean compressed) throws IOException {
+        round++;
+        source = file;
+        sourceRuns = runs;
+        sourceCompressed = compressed;
+        written = new ArrayList<>();
+        position = 0;
+        save();
+    }
+
+    /**
+     * deletes the manifest once the sort is finished
+     * @throws IOException
+     */
+    public void delete() throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    private void save() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("parameters", parameters);
+        properties.setProperty("inputLength", Long.toString(inputLength));
+        properties.setProperty("round", Integer.toString(round));
+        if (source != null) {
+            properties.setProperty("source", source.getPath());
+            properties.setProperty("sourceCompressed", Boolean.toString(sourceCompressed));
+            writeRuns(properties, "source", sourceRuns);
+        }
+        writeRuns(properties, "written", written);
+        properties.setProperty("position", Long.toString(position));
+
+        // the old manifest is only replaced once the new one is complete
+        File tmp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            properties.store(out, "EM-MergeSort round " + round);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeRuns(Properties properties, String prefix, List<Run> runs) {
+        properties.setProperty(prefix + ".runs", Integer.toString(runs.size()));
+        for (int i = 0; i < runs.size(); i++) {
+            Run run = runs.get(i);
+            properties.setProperty(prefix + "." + i, run.getStart() + "," + run.getLength() + ","
+                    + run.getRecords());
+        }
+    }
+
+    private static List<Run> readRuns(Properties properties, String prefix) {
+        int n = Integer.parseInt(properties.getProperty(prefix + ".runs"));
+        List<Run> runs = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            String[] values = properties.getProperty(prefix + "." + i).split(",");
+            runs.add(new Run(Long.parseLong(values[0]), Long.parseLong(values[1]), Long.parseLong(values[2])));
+        }
+        return runs;
+    }
+
+    /**
+     * @param runs
+     * @return the end of the last run in bytes, 0 if there is none
+     */
+    public static long end(List<Run> runs) {
+        if (runs.isEmpty()) {
+            return 0;
+        }
+        Run last = runs.get(runs.size() - 1);
+        return last.getStart() + last.getLength();
+    }
+}
@@ -0,0 +1,97 @@
+package main;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * reads a data run through a FileChannel by memory-mapping one block at a time, so the ints are read straight from
+ * the page cache without copying them into a byte array first
+ */
+public class MappedRunReader implements RunReader {
+    private final FileChannel channel;
+    private final int blockSize;
+    // position of the next block inside the file, in bytes
+    private long position;
+    private final long end;
+    private IntBuffer buffer;
+    private int size = 0;
+    private int pos = 0;
+
+    /**
+     * @param file
+     * @param run
+     * @param blockSize in bytes
+     * @throws IOException
+     */
+    public MappedRunReader(File file, Run run, int blockSize) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.blockSize = blockSize;
+        position = run.getStart();
+        end = run.getStart() + run.getLength();
+        if (end > channel.size()) {
+            channel.close();
+            throw new EOFException("data run ends behind the end of the file");
+        }
+        readBlock();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return pos < size;
+    }
+
+    @Override
+    public int peek() {
+        return buffer.get(pos);
+    }
+
+    @Override
+    public int peek(int offset) {
+        return buffer.get(pos + offset);
+    }
+
+    @Override
+    public int next() throws IOException {
+        int element = buffer.get(pos);
+        if (++pos == size) {
+            readBlock();
+        }
+        return element;
+    }
+
+    @Override
+    public int read(int[] a, int from, int n) throws IOException {
+        int read = 0;
+        while (read < n && hasNext()) {
+            int length = Math.min(n - read, size - pos);
+            buffer.get(pos, a, from + read, length);
+            read += length;
+            pos += length;
+            if (pos == size) {
+                readBlock();
+            }
+        }
+        return read;
+    }
+
+    private void readBlock() throws IOException {
+        int length = (int) Math.min(blockSize, end - position) / Integer.BYTES * Integer.BYTES;
+        pos = 0;
+        if (length == 0) {
+            size = 0;
+            return;
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length).asIntBuffer();
+        size = buffer.capacity();
+        position += length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,136 @@
+package main;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * an array of ints outside of the Java heap that is addressed by long indices, so it may hold more than 2^31
+ * elements and doesn't put pressure on the garbage collector. It consists of direct buffers of up to 2^SHIFT ints,
+ * which are released once the array is garbage collected. Their total size is limited by -XX:MaxDirectMemorySize,
+ * which defaults to the maximal heap size
+ */
+public class OffHeapIntArray {
+    // every segment holds 2^SHIFT ints, only the last one may be shorter
+    private static final int SHIFT = 28;
+    private static final int SEGMENT_LENGTH = 1 << SHIFT;
+    private static final int MASK = SEGMENT_LENGTH - 1;
+
+    private final long length;
+    private final IntBuffer[] segments;
+
+    /**
+     * allocates an array of zeros
+     * @param length
+     */
+    public OffHeapIntArray(long length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("the length can't be negative");
+        }
+        this.length = length;
+        segments = new IntBuffer[(int) ((length + SEGMENT_LENGTH - 1) >>> SHIFT)];
+        for (int s = 0; s < segments.length; s++) {
+            int segmentLength = (int) Math.min(SEGMENT_LENGTH, length - ((long) s << SHIFT));
+            segments[s] = ByteBuffer.allocateDirect(segmentLength * Integer.BYTES).order(ByteOrder.nativeOrder())
+                    .asIntBuffer();
+        }
+    }
+
+    /**
+     * @param a
+     * @return an off-heap copy of the array
+     */
+    public static OffHeapIntArray of(int[] a) {
+        OffHeapIntArray array = new OffHeapIntArray(a.length);
+        array.copyFrom(a, 0, 0, a.length);
+        return array;
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public int get(long i) {
+        return segments[(int) (i >>> SHIFT)].get((int) (i & MASK));
+    }
+
+    public void set(long i, int element) {
+        segments[(int) (i >>> SHIFT)].put((int) (i & MASK), element);
+    }
+
+    public void swap(long i, long j) {
+        int tmp = get(i);
+        set(i, get(j));
+        set(j, tmp);
+    }
+
+    /**
+     * copies the elements a[from..from + n) to this[to..to + n)
+     * @param a
+     * @param from
+     * @param to
+     * @param n
+     */
+    public void copyFrom(int[] a, int from, long to, int n) {
+        while (n > 0) {
+            int offset = (int) (to & MASK);
+            int length = Math.min(n, SEGMENT_LENGTH - offset);
+            segments[(int) (to >>> SHIFT)].put(offset, a, from, length);
+            from += length;
+            to += length;
+            n -= length;
+        }
+    }
+
+    /**
+     * copies the elements this[from..from + n) to a[to..to + n)
+     * @param from
+     * @param a
+     * @param to
+     * @param n
+     */
+    public void copyTo(long from, int[] a, int to, int n) {
+        while (n > 0) {
+            int offset = (int) (from & MASK);
+            int length = Math.min(n, SEGMENT_LENGTH - offset);
+            segments[(int) (from >>> SHIFT)].get(offset, a, to, length);
+            from += length;
+            to += length;
+            n -= length;
+        }
+    }
+
+    /**
+     * copies the elements src[from..from + n) to dst[to..to + n) in bulk, segment by segment. The ranges must not
+     * overlap if src and dst are the same array
+     * @param src
+     * @param from
+     * @param dst
+     * @param to
+     * @param n
+     */
+    public static void copy(OffHeapIntArray src, long from, OffHeapIntArray dst, long to, long n) {
+        while (n > 0) {
+            int srcOffset = (int) (from & MASK);
+            int dstOffset = (int) (to & MASK);
+            int length = (int) Math.min(n, SEGMENT_LENGTH - Math.max(srcOffset, dstOffset));
+            dst.segments[(int) (to >>> SHIFT)].put(dstOffset, src.segments[(int) (from >>> SHIFT)], srcOffset,
+                    length);
+            from += length;
+            to += length;
+            n -= length;
+        }
+    }
+
+    /**
+     * @return the elements as an array on the heap, only possible below 2^31 elements
+     */
+    public int[] toArray() {
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("the array is too large for the heap");
+        }
+        int[] a = new int[(int) length];
+        copyTo(0, a, 0, a.length);
+        return a;
+    }
+}
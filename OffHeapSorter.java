@@ -0,0 +1,434 @@
+package main;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * contains the in-memory sorting algorithms of Sorter for an OffHeapIntArray, with long indices and all scratch
+ * space off the heap. So arrays of several billion ints can be sorted in main memory without a full int[] buffer on
+ * the heap, which is limited to 2^31 elements and has to be scanned by the garbage collector
+ */
+public class OffHeapSorter {
+    // subarrays up to this size are copied to the heap and sorted with a sorting network
+    private static final int NETWORK_SORT_CUTOFF = SmallSort.MAX_NETWORK_SIZE;
+    // from this size on, the pivot of QuickSort is the median of nine instead of three elements
+    private static final int NINTHER_THRESHOLD = 128;
+    // subarrays of parallel QuickSort from this size on are partitioned by all cores
+    private static final long PARALLEL_PARTITION_THRESHOLD = 1 << 20;
+    // number of buckets of radix sort, which sorts by one byte per pass
+    private static final int RADIX = 256;
+
+    public static OffHeapIntArray quickSort(OffHeapIntArray a) {
+        quickSort(a, 0, a.length() - 1);
+        return a;
+    }
+
+    public static OffHeapIntArray parallelQuickSort(OffHeapIntArray a, int p) {
+        ForkJoinPool pool = new ForkJoinPool(p);
+        try {
+            return parallelQuickSort(a, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * sorts the array using parallel QuickSort on the given pool, the smaller subarray after each partition is
+     * forked so that idle cores can steal it, and subarrays of at least PARALLEL_PARTITION_THRESHOLD elements are
+     * partitioned by all cores
+     * @param a
+     * @param pool
+     * @return a, which is sorted
+     */
+    static OffHeapIntArray parallelQuickSort(OffHeapIntArray a, ForkJoinPool pool) {
+        int p = pool.getParallelism();
+        pool.invoke(new QuickSortTask((from, to) -> partitionP(a, p, from, to), (from, to) -> quickSort(a, from, to),
+                0, a.length() - 1, null));
+        return a;
+    }
+
+    /**
+     * sequential QuickSort, see Sorter.quickSort
+     * @param a
+     * @param start (inclusive)
+     * @param end (inclusive)
+     */
+    public static void quickSort(OffHeapIntArray a, long start, long end) {
+        quickSort(a, start, end, new int[NETWORK_SORT_CUTOFF]);
+    }
+
+    /**
+     * @param a
+     * @param start (inclusive)
+     * @param end (inclusive)
+     * @param scratch receives the subarrays that are sorted on the heap, of length NETWORK_SORT_CUTOFF
+     */
+    private static void quickSort(OffHeapIntArray a, long start, long end, int[] scratch) {
+        while (end - start + 1 > NETWORK_SORT_CUTOFF) {
+            long pivotIndex = partition(a, start, end);
+            if (pivotIndex - start < end - pivotIndex) {
+                quickSort(a, start, pivotIndex - 1, scratch);
+                start = pivotIndex + 1;
+            } else {
+                quickSort(a, pivotIndex + 1, end, scratch);
+                end = pivotIndex - 1;
+            }
+        }
+        networkSort(a, start, end, scratch);
+    }
+
+    /**
+     * partitions the subarray in parallel and in place like Sorter.partitionP: the range is split into p chunks
+     * which are partitioned independently, and then the elements greater than the pivot left of its final position
+     * are swapped with the smaller ones right of it, the pairs being split evenly among the cores. Subarrays below
+     * PARALLEL_PARTITION_THRESHOLD are partitioned sequentially. Has to be called from a task of a ForkJoinPool
+     * @param a
+     * @param p number of cores
+     * @param start (inclusive)
+     * @param end (inclusive)
+     * @return index of the pivot element
+     */
+    private static long partitionP(OffHeapIntArray a, int p, long start, long end) {
+        if (p == 1 || end - start + 1 < PARALLEL_PARTITION_THRESHOLD) {
+            return partition(a, start, end);
+        }
+        choosePivot(a, start, end);
+        int pivot = a.get(end);
+
+        // chunk c covers [bounds[c], bounds[c + 1]) and holds lower[c] elements <= pivot at its beginning once it
+        // is partitioned
+        long[] bounds = new long[p + 1];
+        long[] lower = new long[p];
+        for (int c = 0; c <= p; c++) {
+            bounds[c] = start + c * (end - start) / p;
+        }
+        Tasks.invokeAll(p, c -> lower[c] = partitionAndCount(a, bounds[c], bounds[c + 1] - 1, pivot));
+
+        long split = start;
+        for (int c = 0; c < p; c++) {
+            split += lower[c];
+        }
+        // leftRank[c] is the number of greater elements left of the split inside the chunks before c, rightRank[c]
+        // the number of smaller elements right of it
+        long[] leftRank = new long[p + 1];
+        long[] rightRank = new long[p + 1];
+        for (int c = 0; c < p; c++) {
+            long greaterFrom = bounds[c] + lower[c];
+            leftRank[c + 1] = leftRank[c] + Math.max(0, Math.min(bounds[c + 1], split) - greaterFrom);
+            rightRank[c + 1] = rightRank[c] + Math.max(0, greaterFrom - Math.max(bounds[c], split));
+        }
+        long misplaced = leftRank[p];
+        long finalSplit = split;
+        Tasks.invokeAll(p, s -> swapMisplaced(a, bounds, lower, leftRank, rightRank, finalSplit, s * misplaced / p,
+                (s + 1) * misplaced / p));
+
+        a.swap(split, end);
+        return split;
+    }
+
+    /**
+     * swaps the misplaced elements of the given ranks after the chunks have been partitioned by partitionP, see
+     * Sorter.swapMisplaced
+     * @param a
+     * @param bounds
+     * @param lower
+     * @param leftRank
+     * @param rightRank
+     * @param split where the greater elements start once all chunks are merged
+     * @param from rank of the first pair (inclusive)
+     * @param to rank of the last pair (exclusive)
+     */
+    private static void swapMisplaced(OffHeapIntArray a, long[] bounds, long[] lower, long[] leftRank,
+                                      long[] rightRank, long split, long from, long to) {
+        if (from >= to) {
+            return;
+        }
+        int c = 0;
+        while (leftRank[c + 1] <= from) {
+            c++;
+        }
+        int d = 0;
+        while (rightRank[d + 1] <= from) {
+            d++;
+        }
+        long i = bounds[c] + lower[c] + from - leftRank[c];
+        long j = Math.max(bounds[d], split) + from - rightRank[d];
+
+        for (long k = from; k < to; k++) {
+            while (k >= leftRank[c + 1]) {
+                c++;
+                i = bounds[c] + lower[c];
+            }
+            while (k >= rightRank[d + 1]) {
+                d++;
+                j = Math.max(bounds[d], split);
+            }
+            a.swap(i++, j++);
+        }
+    }
+
+    /**
+     * moves the median of three, or of nine for large subarrays, to the end and partitions the subarray around it
+     * @param a
+     * @param start (inclusive)
+     * @param end (inclusive)
+     * @return index of the pivot element
+     */
+    private static long partition(OffHeapIntArray a, long start, long end) {
+        choosePivot(a, start, end);
+        long i = start + partitionAndCount(a, start, end - 1, a.get(end));
+        a.swap(i, end);
+        return i;
+    }
+
+    /**
+     * partitions the subarray according to the given pivot element. Elements equal to the pivot stop both scans, so
+     * they may end up on both sides
+     * @param a
+     * @param start (inclusive)
+     * @param end (inclusive)
+     * @param pivot
+     * @return the number of elements on the left side, which are smaller than or equal to the pivot
+     */
+    private static long partitionAndCount(OffHeapIntArray a, long start, long end, int pivot) {
+        long i = start;
+        long j = end;
+        while (i <= j) {
+            while (i <= j && a.get(i) < pivot) {
+                i++;
+            }
+            while (i <= j && a.get(j) > pivot) {
+                j--;
+            }
+            if (i <= j) {
+                a.swap(i, j);
+                i++;
+                j--;
+            }
+        }
+        return i - start;
+    }
+
+    /**
+     * moves the median of three, or of nine for large subarrays, to the end of the subarray, see Sorter.choosePivot
+     * @param a
+     * @param start (inclusive)
+     * @param end (inclusive)
+     */
+    private static void choosePivot(OffHeapIntArray a, long start, long end) {
+        long n = end - start + 1;
+        long mid = start + n / 2;
+        long pivotIndex;
+        if (n >= NINTHER_THRESHOLD) {
+            long step = n / 8;
+            pivotIndex = median(a, median(a, start, start + step, start + 2 * step), median(a, mid - step, mid,
+                    mid + step), median(a, end - 2 * step, end - step, end));
+        } else {
+            pivotIndex = median(a, start, mid, end);
+        }
+        a.swap(pivotIndex, end);
+    }
+
+    /**
+     * @return the index of the median of a[i], a[j] and a[k]
+     */
+    private static long median(OffHeapIntArray a, long i, long j, long k) {
+        int x = a.get(i);
+        int y = a.get(j);
+        int z = a.get(k);
+        if (x < y) {
+            return y < z ? j : (x < z ? k : i);
+        }
+        return x < z ? i : (y < z ? k : j);
+    }
+
+    /**
+     * sorts a subarray of at most NETWORK_SORT_CUTOFF elements with SmallSort.sort on a copy on the heap
+     * @param a
+     * @param start (inclusive)
+     * @param end (inclusive)
+     * @param scratch receives the copy, of length NETWORK_SORT_CUTOFF, so the callers can reuse it for all leaves
+     */
+    private static void networkSort(OffHeapIntArray a, long start, long end, int[] scratch) {
+        int n = (int) (end - start + 1);
+        if (n < 2) {
+            return;
+        }
+        a.copyTo(start, scratch, 0, n);
+        SmallSort.sort(scratch, 0, n - 1);
+        a.copyFrom(scratch, 0, start, n);
+    }
+
+    /**
+     * stable MergeSort: blocks of NETWORK_SORT_CUTOFF elements are sorted with a sorting network and then merged
+     * bottom-up into an off-heap buffer of the same length
+     * @param a
+     * @return the sorted array, which is either a or the buffer
+     */
+    public static OffHeapIntArray mergeSort(OffHeapIntArray a) {
+        return mergeSort(a, 1);
+    }
+
+    public static OffHeapIntArray parallelMergeSort(OffHeapIntArray a, int p) {
+        ForkJoinPool pool = new ForkJoinPool(p);
+        try {
+            return parallelMergeSort(a, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * parallel MergeSort on the given pool: the merges of each round are distributed among the cores, and once there
+     * are fewer merges than cores, each merge is split into segments by co-ranking
+     * @param a
+     * @param pool
+     * @return the sorted array, which is either a or a buffer of the same length
+     */
+    static OffHeapIntArray parallelMergeSort(OffHeapIntArray a, ForkJoinPool pool) {
+        int p = pool.getParallelism();
+        return pool.invoke(ForkJoinTask.adapt(() -> mergeSort(a, p)));
+    }
+
+    /**
+     * @param a
+     * @param p number of cores, with more than one this has to be called from a task of a ForkJoinPool
+     * @return the sorted array, which is either a or a buffer of the same length
+     */
+    private static OffHeapIntArray mergeSort(OffHeapIntArray a, int p) {
+        long n = a.length();
+        long blocks = (n + NETWORK_SORT_CUTOFF - 1) / NETWORK_SORT_CUTOFF;
+        Tasks.forEachRange(blocks, p, (from, to) -> {
+            int[] scratch = new int[NETWORK_SORT_CUTOFF];
+            for (long b = from; b < to; b++) {
+                networkSort(a, b * NETWORK_SORT_CUTOFF, Math.min(n, (b + 1) * NETWORK_SORT_CUTOFF) - 1, scratch);
+            }
+        });
+
+        OffHeapIntArray src = a;
+        OffHeapIntArray buf = new OffHeapIntArray(n);
+        for (long subArraySize = NETWORK_SORT_CUTOFF; subArraySize < n; subArraySize *= 2) {
+            OffHeapIntArray from = src;
+            OffHeapIntArray to = buf;
+            ParallelMerge.mergeRound(n, subArraySize, p, (i, j) -> from.get(i) <= from.get(j),
+                    (i, leftEnd, j, rightEnd, k) -> merge(from, to, i, leftEnd, j, rightEnd, k));
+            src = to;
+            buf = from;
+        }
+        return src;
+    }
+
+    /**
+     * merges the sorted subarrays a[i..leftEnd] and a[j..rightEnd] into buf, starting at index k
+     */
+    private static void merge(OffHeapIntArray a, OffHeapIntArray buf, long i, long leftEnd, long j, long rightEnd,
+                              long k) {
+        if (i <= leftEnd && j <= rightEnd) {
+            int left = a.get(i);
+            int right = a.get(j);
+            while (true) {
+                if (left <= right) {
+                    buf.set(k++, left);
+                    if (++i > leftEnd) {
+                        break;
+                    }
+                    left = a.get(i);
+                } else {
+                    buf.set(k++, right);
+                    if (++j > rightEnd) {
+                        break;
+                    }
+                    right = a.get(j);
+                }
+            }
+        }
+        if (i <= leftEnd) {
+            OffHeapIntArray.copy(a, i, buf, k, leftEnd - i + 1);
+        } else if (j <= rightEnd) {
+            OffHeapIntArray.copy(a, j, buf, k, rightEnd - j + 1);
+        }
+    }
+
+    /**
+     * LSD radix sort with one byte per pass, see Sorter.radixSort
+     * @param a
+     * @return the sorted array, which is either a or an off-heap buffer of the same length
+     */
+    public static OffHeapIntArray radixSort(OffHeapIntArray a) {
+        return radixSort(a, 1);
+    }
+
+    public static OffHeapIntArray parallelRadixSort(OffHeapIntArray a, int p) {
+        ForkJoinPool pool = new ForkJoinPool(p);
+        try {
+            return parallelRadixSort(a, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    static OffHeapIntArray parallelRadixSort(OffHeapIntArray a, ForkJoinPool pool) {
+        int p = pool.getParallelism();
+        return pool.invoke(ForkJoinTask.adapt(() -> radixSort(a, p)));
+    }
+
+    /**
+     * every core counts the bytes of its chunk in its own histogram, and the prefix sums over all histograms tell
+     * each core where to scatter its elements
+     * @param a
+     * @param p number of cores, with more than one this has to be called from a task of a ForkJoinPool
+     * @return the sorted array, which is either a or a buffer of the same length
+     */
+    private static OffHeapIntArray radixSort(OffHeapIntArray a, int p) {
+        long n = a.length();
+        OffHeapIntArray buf = new OffHeapIntArray(n);
+        long[][] count = new long[p][RADIX];
+        long[] bounds = new long[p + 1];
+        for (int t = 0; t <= p; t++) {
+            bounds[t] = t * n / p;
+        }
+
+        for (int digit = 0; digit < Integer.BYTES; digit++) {
+            OffHeapIntArray src = a;
+            OffHeapIntArray dst = buf;
+            int shift = 8 * digit;
+            // the sign bit of the most significant byte is flipped, so negative elements come first
+            int flip = digit == Integer.BYTES - 1 ? RADIX >>> 1 : 0;
+            Tasks.forEach(p, p, t -> {
+                Arrays.fill(count[t], 0);
+                for (long i = bounds[t]; i < bounds[t + 1]; i++) {
+                    count[t][((src.get(i) >>> shift) & (RADIX - 1)) ^ flip]++;
+                }
+            });
+
+            long sum = 0;
+            boolean skip = false;
+            for (int d = 0; d < RADIX; d++) {
+                long start = sum;
+                for (int t = 0; t < p; t++) {
+                    long c = count[t][d];
+                    count[t][d] = sum;
+                    sum += c;
+                }
+                skip |= sum - start == n;
+            }
+            if (n == 0 || skip) {
+                continue;
+            }
+
+            Tasks.forEach(p, p, t -> {
+                long[] pos = count[t];
+                for (long i = bounds[t]; i < bounds[t + 1]; i++) {
+                    int element = src.get(i);
+                    dst.set(pos[((element >>> shift) & (RADIX - 1)) ^ flip]++, element);
+                }
+            });
+
+            a = dst;
+            buf = src;
+        }
+
+        return a;
+    }
+}
@@ -0,0 +1,123 @@
+package main;
+
+/**
+ * the parts of parallel bottom-up MergeSort that don't depend on the type of the array, which is only accessed
+ * through the given order and sequential merge: splitting a merge into segments of equal size by co-ranking, and
+ * distributing the merges of a round among the cores
+ */
+public class ParallelMerge {
+    // merges below this size aren't split among several cores
+    private static final int PARALLEL_MERGE_THRESHOLD = 20000;
+
+    /**
+     * compares two elements of the array that is merged
+     */
+    interface Order {
+        /**
+         * @param i
+         * @param j
+         * @return whether a[i] <= a[j]
+         */
+        boolean lessOrEqual(long i, long j);
+    }
+
+    /**
+     * merges the sorted subarrays a[i..leftEnd] and a[j..rightEnd] of the source into the buffer, starting at index k
+     */
+    interface Merge {
+        void merge(long i, long leftEnd, long j, long rightEnd, long k);
+    }
+
+    /**
+     * one round of bottom-up MergeSort: merges each pair of neighbouring sorted subarrays of the given size of
+     * a[0..n). The merges are distributed among the cores, and once there are fewer merges than cores, each large
+     * merge is split among several cores by mergeP
+     * @param n
+     * @param size of the sorted subarrays
+     * @param p number of cores, with more than one this has to be called from a task of a ForkJoinPool
+     * @param order
+     * @param merge
+     */
+    static void mergeRound(long n, long size, int p, Order order, Merge merge) {
+        mergeRound(n, size, p, true, order, merge);
+    }
+
+    /**
+     * same as mergeRound(n, size, p, order, merge)
+     * @param n
+     * @param size of the sorted subarrays
+     * @param p number of cores, with more than one this has to be called from a task of a ForkJoinPool
+     * @param splitMerges whether large merges may be split among several cores, otherwise each merge is sequential
+     * @param order
+     * @param merge
+     */
+    static void mergeRound(long n, long size, int p, boolean splitMerges, Order order, Merge merge) {
+        long merges = (n + 2 * size - 1) / (2 * size);
+        int coresPerMerge = splitMerges ? (int) (p / merges) : 1;
+        Tasks.forEachRange(merges, p, (first, last) -> {
+            for (long m = first; m < last; m++) {
+                long leftStart = Math.min(n, 2 * m * size);
+                long leftEnd = Math.min(n, leftStart + size) - 1;
+                long rightEnd = Math.min(n, leftStart + 2 * size) - 1;
+                if (coresPerMerge >= 2 && rightEnd - leftStart + 1 >= PARALLEL_MERGE_THRESHOLD) {
+                    mergeP(order, merge, leftStart, leftEnd, rightEnd, coresPerMerge);
+                } else {
+                    merge.merge(leftStart, leftEnd, leftEnd + 1, rightEnd, leftStart);
+                }
+            }
+        });
+    }
+
+    /**
+     * merges the two subarrays in parallel: the output is split into p segments of equal size, and the parts of the
+     * subarrays that belong to each segment are found by coRank and merged sequentially. Has to be called from a
+     * task of a ForkJoinPool
+     * @param order
+     * @param merge
+     * @param leftStart (inclusive)
+     * @param leftEnd (inclusive)
+     * @param rightEnd (inclusive)
+     * @param p number of segments
+     */
+    static void mergeP(Order order, Merge merge, long leftStart, long leftEnd, long rightEnd, int p) {
+        long n = rightEnd - leftStart + 1;
+        Tasks.invokeAll(p, s -> {
+            long from = s * n / p;
+            long to = (s + 1) * n / p;
+            long i = coRank(order, from, leftStart, leftEnd, rightEnd);
+            long iEnd = coRank(order, to, leftStart, leftEnd, rightEnd);
+            long j = leftEnd + 1 + from - (i - leftStart);
+            long jEnd = leftEnd + 1 + to - (iEnd - leftStart);
+            merge.merge(i, iEnd - 1, j, jEnd - 1, leftStart + from);
+        });
+    }
+
+    /**
+     * finds where the merged output of two subarrays reaches the given rank, by a binary search over how many of
+     * the first k elements of the output come from the left subarray. Ties are taken from the left subarray first,
+     * like in a stable merge
+     * @param order
+     * @param k rank inside the output, between 0 and the length of both subarrays
+     * @param leftStart (inclusive)
+     * @param leftEnd (inclusive)
+     * @param rightEnd (inclusive)
+     * @return the index of the left subarray where the output of rank k continues, the right subarray continues at
+     * leftEnd + 1 + k - (returned index - leftStart)
+     */
+    static long coRank(Order order, long k, long leftStart, long leftEnd, long rightEnd) {
+        long low = Math.max(0, k - (rightEnd - leftEnd));
+        long high = Math.min(k, leftEnd - leftStart + 1);
+
+        // looks for the smallest i such that the last element taken from the right is smaller than the next element
+        // of the left
+        while (low < high) {
+            long i = (low + high) >>> 1;
+            if (order.lessOrEqual(leftStart + i, leftEnd + k - i)) {
+                low = i + 1;
+            } else {
+                high = i;
+            }
+        }
+        return leftStart + low;
+    }
+}
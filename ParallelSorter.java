@@ -0,0 +1,319 @@
+package main;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * sorts arrays in main memory on a long-lived ForkJoinPool, so repeated calls don't pay for creating and stopping
+ * threads. The pool is either created by the sorter and shut down by close, or passed in by the caller, who stays
+ * responsible for shutting it down. All sorting methods may be called concurrently from several threads, the calls
+ * share the threads of the pool
+ */
+public class ParallelSorter implements AutoCloseable {
+    private final ForkJoinPool pool;
+    // whether the pool was created by this sorter and is shut down by close
+    private final boolean ownsPool;
+    // receives the tasks and partitions of parallel QuickSort, may be null
+    private final SortStats stats;
+
+    /**
+     * creates a sorter with its own pool
+     * @param p number of cores
+     */
+    public ParallelSorter(int p) {
+        this(p, null);
+    }
+
+    /**
+     * creates a sorter with its own pool that records the forked tasks and the balance of the parallel partitions
+     * of QuickSort in the stats
+     * @param p number of cores
+     * @param stats may be null
+     */
+    public ParallelSorter(int p, SortStats stats) {
+        if (p < 1) {
+            throw new IllegalArgumentException("at least one core is needed");
+        }
+        pool = new ForkJoinPool(p);
+        ownsPool = true;
+        this.stats = stats;
+    }
+
+    /**
+     * creates a sorter that runs on the given pool, which isn't shut down by close
+     * @param pool
+     */
+    public ParallelSorter(ForkJoinPool pool) {
+        this.pool = pool;
+        ownsPool = false;
+        stats = null;
+    }
+
+    /**
+     * @return a sorter that runs on the common pool of the JVM
+     */
+    public static ParallelSorter commonPool() {
+        return new ParallelSorter(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @return the number of cores the sorts are split among
+     */
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * @return the number of threads the pool has started so far
+     */
+    public int getPoolSize() {
+        return pool.getPoolSize();
+    }
+
+    /**
+     * @return the number of tasks the threads of the pool have stolen from each other so far
+     */
+    public long getStealCount() {
+        return pool.getStealCount();
+    }
+
+    public int[] quickSort(int[] a) {
+        return quickSort(a, false);
+    }
+
+    /**
+     * sorts the array with parallel QuickSort, see Sorter.parallelQuickSort
+     * @param a
+     * @param moreP whether the parallel partition method should be used
+     * @return a, which is sorted
+     */
+    public int[] quickSort(int[] a, boolean moreP) {
+        return Sorter.parallelQuickSort(a, moreP, pool, stats);
+    }
+
+    public int[] mergeSort(int[] a) throws InterruptedException {
+        return mergeSort(a, a.length, false);
+    }
+
+    /**
+     * sorts the first n elements of the array with parallel MergeSort, see Sorter.parallelMergeSort
+     * @param a
+     * @param n
+     * @param moreP whether parallel merge should be used
+     * @return the sorted array, which is either a or a buffer of the same length
+     * @throws InterruptedException
+     */
+    public int[] mergeSort(int[] a, int n, boolean moreP) throws InterruptedException {
+        return Sorter.parallelMergeSort(a, n, moreP, pool);
+    }
+
+    /**
+     * sorts the first n records of the array with parallel MergeSort
+     * @param a
+     * @param n number of records
+     * @param format
+     * @return the sorted array, which is either a or a buffer of the same length
+     * @throws InterruptedException
+     */
+    public int[] mergeSort(int[] a, int n, RecordFormat format) throws InterruptedException {
+        if (format.getWidth() == 1) {
+            return mergeSort(a, n, false);
+        }
+        return Sorter.parallelMergeSort(a, n, format, pool);
+    }
+
+    /**
+     * sorts the array with parallel natural MergeSort, which adapts to presorted input, see
+     * Sorter.adaptiveMergeSort
+     * @param a
+     * @return the sorted array, which is either a or a buffer of the same length
+     */
+    public int[] adaptiveMergeSort(int[] a) {
+        return Sorter.parallelAdaptiveMergeSort(a, a.length, pool);
+    }
+
+    /**
+     * sorts the array with parallel sample sort, see Sorter.sampleSort
+     * @param a
+     * @return the sorted array, which is either a or a buffer of the same length
+     */
+    public int[] sampleSort(int[] a) {
+        return Sorter.sampleSort(a, pool);
+    }
+
+    public int[] radixSort(int[] a) {
+        return radixSort(a, a.length, RecordFormat.INT);
+    }
+
+    /**
+     * sorts the first n records of the array with parallel LSD radix sort, see Sorter.parallelRadixSort
+     * @param a
+     * @param n number of records
+     * @param format
+     * @return the sorted array, which is either a or a buffer of the same length
+     */
+    public int[] radixSort(int[] a, int n, RecordFormat format) {
+        return Sorter.parallelRadixSort(a, n, format, pool);
+    }
+
+    /**
+     * rearranges the array with parallel quickselect, see Sorter.select
+     * @param a
+     * @param k rank, 0 is the smallest element
+     * @return a[k], the element that would be there if the array was sorted
+     */
+    public int select(int[] a, int k) {
+        return Sorter.parallelSelect(a, k, pool);
+    }
+
+    /**
+     * selects several ranks at once in parallel, see Sorter.select
+     * @param a
+     * @param ranks 0 is the smallest element
+     * @return the selected elements in the order of ranks
+     */
+    public int[] select(int[] a, int[] ranks) {
+        return Sorter.parallelSelect(a, ranks, pool);
+    }
+
+    /**
+     * sorts the k smallest elements into the beginning of the array in parallel, see Sorter.partialSort
+     * @param a
+     * @param k
+     * @return a
+     */
+    public int[] partialSort(int[] a, int k) {
+        return Sorter.parallelPartialSort(a, k, pool);
+    }
+
+    /**
+     * sorts the array with parallel QuickSort, see PrimitiveSorter.parallelQuickSort
+     * @param a
+     * @return a, which is sorted
+     */
+    public long[] quickSort(long[] a) {
+        return PrimitiveSorter.parallelQuickSort(a, pool);
+    }
+
+    /**
+     * sorts the array with parallel QuickSort in the order of Double.compare
+     * @param a
+     * @return a, which is sorted
+     */
+    public double[] quickSort(double[] a) {
+        return PrimitiveSorter.parallelQuickSort(a, pool);
+    }
+
+    /**
+     * sorts the array with parallel MergeSort, see PrimitiveSorter.parallelMergeSort
+     * @param a
+     * @return the sorted array, which is either a or a buffer of the same length
+     */
+    public long[] mergeSort(long[] a) {
+        return PrimitiveSorter.parallelMergeSort(a, pool);
+    }
+
+    /**
+     * sorts the array with parallel MergeSort in the order of Double.compare
+     * @param a
+     * @return a, which is sorted
+     */
+    public double[] mergeSort(double[] a) {
+        return PrimitiveSorter.parallelMergeSort(a, pool);
+    }
+
+    /**
+     * sorts the array with parallel LSD radix sort, see PrimitiveSorter.parallelRadixSort
+     * @param a
+     * @return the sorted array, which is either a or a buffer of the same length
+     */
+    public long[] radixSort(long[] a) {
+        return PrimitiveSorter.parallelRadixSort(a, pool);
+    }
+
+    /**
+     * sorts the array with parallel LSD radix sort in the order of Double.compare
+     * @param a
+     * @return a, which is sorted
+     */
+    public double[] radixSort(double[] a) {
+        return PrimitiveSorter.parallelRadixSort(a, pool);
+    }
+
+    /**
+     * sorts the off-heap array with parallel QuickSort, see OffHeapSorter.parallelQuickSort
+     * @param a
+     * @return a, which is sorted
+     */
+    public OffHeapIntArray quickSort(OffHeapIntArray a) {
+        return OffHeapSorter.parallelQuickSort(a, pool);
+    }
+
+    /**
+     * sorts the off-heap array with parallel MergeSort, see OffHeapSorter.parallelMergeSort
+     * @param a
+     * @return the sorted array, which is either a or an off-heap buffer of the same length
+     */
+    public OffHeapIntArray mergeSort(OffHeapIntArray a) {
+        return OffHeapSorter.parallelMergeSort(a, pool);
+    }
+
+    /**
+     * sorts the off-heap array with parallel LSD radix sort, see OffHeapSorter.parallelRadixSort
+     * @param a
+     * @return the sorted array, which is either a or an off-heap buffer of the same length
+     */
+    public OffHeapIntArray radixSort(OffHeapIntArray a) {
+        return OffHeapSorter.parallelRadixSort(a, pool);
+    }
+
+    /**
+     * sorts the indices of the keys by the keys, see PrimitiveSorter.argsort
+     * @param keys
+     * @return the indices in the order of their keys, equal keys keep their order
+     */
+    public int[] argsort(int[] keys) {
+        int p = getParallelism();
+        return pool.invoke(ForkJoinTask.adapt(() -> PrimitiveSorter.argsort(keys, p)));
+    }
+
+    public int[] argsort(long[] keys) {
+        int p = getParallelism();
+        return pool.invoke(ForkJoinTask.adapt(() -> PrimitiveSorter.argsort(keys, p)));
+    }
+
+    public int[] argsort(double[] keys) {
+        int p = getParallelism();
+        return pool.invoke(ForkJoinTask.adapt(() -> PrimitiveSorter.argsort(keys, p)));
+    }
+
+    /**
+     * @return whether the pool has been shut down, the sorter can't be used anymore then
+     */
+    public boolean isShutdown() {
+        return pool.isShutdown();
+    }
+
+    /**
+     * waits until the sorts that are still running have finished after close
+     * @param timeout
+     * @param unit
+     * @return whether the pool has terminated
+     * @throws InterruptedException
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return pool.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * shuts down the pool if it is owned by this sorter. Sorts that are already running are completed, new ones are
+     * rejected
+     */
+    @Override
+    public void close() {
+        if (ownsPool) {
+            pool.shutdown();
+        }
+    }
+}
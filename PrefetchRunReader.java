@@ -0,0 +1,114 @@
+package main;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * reads a data run with double buffering: while the elements of the current block are consumed, the next block is
+ * read from the underlying reader in the background
+ */
+public class PrefetchRunReader implements RunReader {
+    private final RunReader in;
+    private final ExecutorService executor;
+    private int[] current;
+    private int[] next;
+    private int size;
+    private int pos = 0;
+    // fills next, null once the end of the run has been reached
+    private Future<Integer> pending;
+
+    /**
+     * @param in the underlying reader, which is closed together with this one
+     * @param blockSize in bytes
+     * @param executor runs the background reads
+     * @throws IOException
+     */
+    public PrefetchRunReader(RunReader in, int blockSize, ExecutorService executor) throws IOException {
+        this.in = in;
+        this.executor = executor;
+        current = new int[blockSize / Integer.BYTES];
+        next = new int[current.length];
+        size = in.read(current, 0, current.length);
+        prefetch();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return pos < size;
+    }
+
+    @Override
+    public int peek() {
+        return current[pos];
+    }
+
+    @Override
+    public int peek(int offset) {
+        return current[pos + offset];
+    }
+
+    @Override
+    public int next() throws IOException {
+        int element = current[pos];
+        if (++pos == size) {
+            swap();
+        }
+        return element;
+    }
+
+    @Override
+    public int read(int[] a, int from, int n) throws IOException {
+        int read = 0;
+        while (read < n && hasNext()) {
+            int length = Math.min(n - read, size - pos);
+            System.arraycopy(current, pos, a, from + read, length);
+            read += length;
+            pos += length;
+            if (pos == size) {
+                swap();
+            }
+        }
+        return read;
+    }
+
+    /**
+     * starts reading the next block unless the last read already hit the end of the run
+     */
+    private void prefetch() {
+        if (size < current.length) {
+            pending = null;
+            return;
+        }
+        int[] buf = next;
+        pending = executor.submit(() -> in.read(buf, 0, buf.length));
+    }
+
+    /**
+     * waits for the block that is read in the background and makes it the current one
+     * @throws IOException
+     */
+    private void swap() throws IOException {
+        pos = 0;
+        if (pending == null) {
+            size = 0;
+            return;
+        }
+        size = Tasks.await(pending);
+        int[] tmp = current;
+        current = next;
+        next = tmp;
+        prefetch();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (pending != null) {
+                Tasks.await(pending);
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,530 @@
+package main;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * contains the sorting algorithms of Sorter for long[] and double[], and argsort, which sorts the indices of a key
+ * array instead of the keys, so objects can be sorted by a primitive key without boxing or a Comparator.
+ * Doubles are sorted by mapping them to longs with the same order as Double.compare: -0.0 comes before 0.0 and NaN
+ * after positive infinity
+ */
+public class PrimitiveSorter {
+    // subarrays up to this size are sorted with a sorting network
+    private static final int NETWORK_SORT_CUTOFF = SmallSort.MAX_NETWORK_SIZE;
+    // from this size on, the pivot of QuickSort is the median of nine instead of three elements
+    private static final int NINTHER_THRESHOLD = 128;
+    // number of buckets of radix sort, which sorts by one byte per pass
+    private static final int RADIX = 256;
+
+    public static long[] quickSort(long[] a) {
+        quickSort(a, 0, a.length - 1);
+        return a;
+    }
+
+    public static long[] parallelQuickSort(long[] a, int p) {
+        ForkJoinPool pool = new ForkJoinPool(p);
+        try {
+            return parallelQuickSort(a, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * sorts the array using parallel QuickSort on the given pool, the smaller subarray after each partition is
+     * forked so that idle cores can steal it
+     * @param a
+     * @param pool
+     * @return a, which is sorted
+     */
+    static long[] parallelQuickSort(long[] a, ForkJoinPool pool) {
+        pool.invoke(quickSortTask(a, 0, a.length - 1));
+        return a;
+    }
+
+    public static double[] quickSort(double[] a) {
+        long[] keys = toSortable(a, 1);
+        quickSort(keys);
+        fromSortable(keys, a, 1);
+        return a;
+    }
+
+    public static double[] parallelQuickSort(double[] a, int p) {
+        ForkJoinPool pool = new ForkJoinPool(p);
+        try {
+            return parallelQuickSort(a, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    static double[] parallelQuickSort(double[] a, ForkJoinPool pool) {
+        int p = pool.getParallelism();
+        return pool.invoke(ForkJoinTask.adapt(() -> {
+            long[] keys = toSortable(a, p);
+            quickSortTask(keys, 0, keys.length - 1).invoke();
+            fromSortable(keys, a, p);
+            return a;
+        }));
+    }
+
+    /**
+     * @return a task that sorts the subarray a[start..end] using parallel QuickSort
+     */
+    private static QuickSortTask quickSortTask(long[] a, int start, int end) {
+        return new QuickSortTask((from, to) -> partition(a, (int) from, (int) to),
+                (from, to) -> quickSort(a, (int) from, (int) to), start, end, null);
+    }
+
+    /**
+     * sequential QuickSort, see Sorter.quickSort
+     * @param a
+     * @param start (inclusive)
+     * @param end (inclusive)
+     */
+    public static void quickSort(long[] a, int start, int end) {
+        while (end - start + 1 > NETWORK_SORT_CUTOFF) {
+            int pivotIndex = partition(a, start, end);
+            if (pivotIndex - start < end - pivotIndex) {
+                quickSort(a, start, pivotIndex - 1);
+                start = pivotIndex + 1;
+            } else {
+                quickSort(a, pivotIndex + 1, end);
+                end = pivotIndex - 1;
+            }
+        }
+        SmallSort.sort(a, start, end);
+    }
+
+    /**
+     * moves the median of three, or of nine for large subarrays, to the end and partitions the subarray around it
+     * with SmallSort.partition. Elements equal to the pivot may end up on both sides
+     * @param a
+     * @param start (inclusive)
+     * @param end (inclusive)
+     * @return index of the pivot element
+     */
+    private static int partition(long[] a, int start, int end) {
+        int n = end - start + 1;
+        int mid = start + n / 2;
+        int pivotIndex;
+        if (n >= NINTHER_THRESHOLD) {
+            int step = n / 8;
+            pivotIndex = median(a, median(a, start, start + step, start + 2 * step), median(a, mid - step, mid,
+                    mid + step), median(a, end - 2 * step, end - step, end));
+        } else {
+            pivotIndex = median(a, start, mid, end);
+        }
+        swap(a, pivotIndex, end);
+
+        int i = SmallSort.partition(a, start, end - 1, a[end]);
+        swap(a, i, end);
+        return i;
+    }
+
+    /**
+     * @return the index of the median of a[i], a[j] and a[k]
+     */
+    private static int median(long[] a, int i, int j, int k) {
+        if (a[i] < a[j]) {
+            return a[j] < a[k] ? j : (a[i] < a[k] ? k : i);
+        }
+        return a[i] < a[k] ? i : (a[j] < a[k] ? k : j);
+    }
+
+    private static void swap(long[] a, int i, int j) {
+        long tmp = a[i];
+        a[i] = a[j];
+        a[j] = tmp;
+    }
+
+    /**
+     * stable MergeSort: blocks of NETWORK_SORT_CUTOFF elements are sorted with a sorting network and then merged
+     * bottom-up
+     * @param a
+     * @return the sorted array, which is either a or a buffer of the same length
+     */
+    public static long[] mergeSort(long[] a) {
+        return mergeSort(a, 1);
+    }
+
+    public static long[] parallelMergeSort(long[] a, int p) {
+        ForkJoinPool pool = new ForkJoinPool(p);
+        try {
+            return parallelMergeSort(a, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * parallel MergeSort on the given pool: the merges of each round are distributed among the cores, and once there
+     * are fewer merges than cores, each merge is split into segments by co-ranking
+     * @param a
+     * @param pool
+     * @return the sorted array, which is either a or a buffer of the same length
+     */
+    static long[] parallelMergeSort(long[] a, ForkJoinPool pool) {
+        int p = pool.getParallelism();
+        return pool.invoke(ForkJoinTask.adapt(() -> mergeSort(a, p)));
+    }
+
+    public static double[] mergeSort(double[] a) {
+        long[] keys = mergeSort(toSortable(a, 1));
+        fromSortable(keys, a, 1);
+        return a;
+    }
+
+    public static double[] parallelMergeSort(double[] a, int p) {
+        ForkJoinPool pool = new ForkJoinPool(p);
+        try {
+            return parallelMergeSort(a, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    static double[] parallelMergeSort(double[] a, ForkJoinPool pool) {
+        int p = pool.getParallelism();
+        return pool.invoke(ForkJoinTask.adapt(() -> {
+            long[] keys = mergeSort(toSortable(a, p), p);
+            fromSortable(keys, a, p);
+            return a;
+        }));
+    }
+
+    /**
+     * @param a
+     * @param p number of cores, with more than one this has to be called from a task of a ForkJoinPool
+     * @return the sorted array, which is either a or a buffer of the same length
+     */
+    private static long[] mergeSort(long[] a, int p) {
+        int n = a.length;
+        int blocks = (n + NETWORK_SORT_CUTOFF - 1) / NETWORK_SORT_CUTOFF;
+        Tasks.forEachRange(blocks, p, (from, to) -> sortBlocks(a, (int) from * NETWORK_SORT_CUTOFF,
+                (int) Math.min(n, to * NETWORK_SORT_CUTOFF)));
+
+        long[] src = a;
+        long[] buf = new long[n];
+        for (int subArraySize = NETWORK_SORT_CUTOFF; subArraySize < n; subArraySize *= 2) {
+            long[] from = src;
+            long[] to = buf;
+            ParallelMerge.mergeRound(n, subArraySize, p, (i, j) -> from[(int) i] <= from[(int) j],
+                    (i, leftEnd, j, rightEnd, k) -> merge(from, to, (int) i, (int) leftEnd, (int) j, (int) rightEnd,
+                            (int) k));
+            src = to;
+            buf = from;
+        }
+        return src;
+    }
+
+    /**
+     * sorts every block of NETWORK_SORT_CUTOFF elements of a[from..to) with a sorting network, which replaces the
+     * first rounds of MergeSort
+     * @param a
+     * @param from (inclusive), a multiple of NETWORK_SORT_CUTOFF
+     * @param to (exclusive)
+     */
+    private static void sortBlocks(long[] a, int from, int to) {
+        for (int start = from; start < to; start += NETWORK_SORT_CUTOFF) {
+            SmallSort.sort(a, start, Math.min(start + NETWORK_SORT_CUTOFF, to) - 1);
+        }
+    }
+
+    /**
+     * merges the sorted subarrays a[i..leftEnd] and a[j..rightEnd] into buf, starting at index k
+     */
+    private static void merge(long[] a, long[] buf, int i, int leftEnd, int j, int rightEnd, int k) {
+        while (i <= leftEnd && j <= rightEnd) {
+            buf[k++] = a[i] <= a[j] ? a[i++] : a[j++];
+        }
+        System.arraycopy(a, i, buf, k, leftEnd - i + 1);
+        k += Math.max(0, leftEnd - i + 1);
+        System.arraycopy(a, j, buf, k, Math.max(0, rightEnd - j + 1));
+    }
+
+    /**
+     * LSD radix sort with one byte per pass, see Sorter.radixSort
+     * @param a
+     * @return the sorted array, which is either a or a buffer of the same length
+     */
+    public static long[] radixSort(long[] a) {
+        return radixSort(a, 1);
+    }
+
+    public static long[] parallelRadixSort(long[] a, int p) {
+        ForkJoinPool pool = new ForkJoinPool(p);
+        try {
+            return parallelRadixSort(a, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    static long[] parallelRadixSort(long[] a, ForkJoinPool pool) {
+        int p = pool.getParallelism();
+        return pool.invoke(ForkJoinTask.adapt(() -> radixSort(a, p)));
+    }
+
+    public static double[] radixSort(double[] a) {
+        long[] keys = radixSort(toSortable(a, 1));
+        fromSortable(keys, a, 1);
+        return a;
+    }
+
+    public static double[] parallelRadixSort(double[] a, int p) {
+        ForkJoinPool pool = new ForkJoinPool(p);
+        try {
+            return parallelRadixSort(a, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    static double[] parallelRadixSort(double[] a, ForkJoinPool pool) {
+        int p = pool.getParallelism();
+        return pool.invoke(ForkJoinTask.adapt(() -> {
+            long[] keys = radixSort(toSortable(a, p), p);
+            fromSortable(keys, a, p);
+            return a;
+        }));
+    }
+
+    /**
+     * @param a
+     * @param p number of cores, with more than one this has to be called from a task of a ForkJoinPool
+     * @return the sorted array, which is either a or a buffer of the same length
+     */
+    private static long[] radixSort(long[] a, int p) {
+        return (long[]) radixSort(a, null, Long.BYTES, p)[0];
+    }
+
+    /**
+     * stable LSD radix sort of the keys, which moves the indices along with them if they are given. Every core counts
+     * the bytes of its chunk in its own histogram, and the prefix sums over all histograms tell each core where to
+     * scatter its elements
+     * @param keys
+     * @param indices null or of the same length as keys
+     * @param keyBytes number of bytes of the keys, which are sign extended
+     * @param p number of cores, with more than one this has to be called from a task of a ForkJoinPool
+     * @return the sorted keys and the indices, each of which is either the given array or a buffer
+     */
+    private static Object[] radixSort(long[] keys, int[] indices, int keyBytes, int p) {
+        int n = keys.length;
+        long[] keyBuf = new long[n];
+        int[] indexBuf = indices != null ? new int[n] : null;
+        int[][] count = new int[p][RADIX];
+        int[] bounds = new int[p + 1];
+        for (int t = 0; t <= p; t++) {
+            bounds[t] = (int) ((long) t * n / p);
+        }
+
+        for (int digit = 0; digit < keyBytes; digit++) {
+            long[] src = keys;
+            long[] dst = keyBuf;
+            int[] srcIndices = indices;
+            int[] dstIndices = indexBuf;
+            int shift = 8 * digit;
+            // the sign bit of the most significant byte is flipped, so negative keys come first
+            int flip = digit == keyBytes - 1 ? RADIX >>> 1 : 0;
+            Tasks.forEach(p, p, t -> {
+                Arrays.fill(count[t], 0);
+                for (int i = bounds[t]; i < bounds[t + 1]; i++) {
+                    count[t][((int) (src[i] >>> shift) & (RADIX - 1)) ^ flip]++;
+                }
+            });
+
+            int sum = 0;
+            boolean skip = false;
+            for (int d = 0; d < RADIX; d++) {
+                int start = sum;
+                for (int t = 0; t < p; t++) {
+                    int c = count[t][d];
+                    count[t][d] = sum;
+                    sum += c;
+                }
+                skip |= sum - start == n;
+            }
+            if (n == 0 || skip) {
+                continue;
+            }
+
+            Tasks.forEach(p, p, t -> {
+                for (int i = bounds[t]; i < bounds[t + 1]; i++) {
+                    int pos = count[t][((int) (src[i] >>> shift) & (RADIX - 1)) ^ flip]++;
+                    dst[pos] = src[i];
+                    if (srcIndices != null) {
+                        dstIndices[pos] = srcIndices[i];
+                    }
+                }
+            });
+
+            keys = dst;
+            keyBuf = src;
+            indices = dstIndices;
+            indexBuf = srcIndices;
+        }
+
+        return new Object[] {keys, indices};
+    }
+
+    /**
+     * sorts the indices 0..n - 1 by the keys with stable radix sort, keys.length = n. Applying the result with
+     * permute sorts any array of the same length by these keys
+     * @param keys
+     * @return the indices in the order of their keys, equal keys keep their order
+     */
+    public static int[] argsort(int[] keys) {
+        return argsort(keys, 1);
+    }
+
+    public static int[] argsort(long[] keys) {
+        return argsort(keys, 1);
+    }
+
+    public static int[] argsort(double[] keys) {
+        return argsort(keys, 1);
+    }
+
+    public static int[] parallelArgsort(int[] keys, int p) {
+        ForkJoinPool pool = new ForkJoinPool(p);
+        try {
+            return pool.invoke(ForkJoinTask.adapt(() -> argsort(keys, p)));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public static int[] parallelArgsort(long[] keys, int p) {
+        ForkJoinPool pool = new ForkJoinPool(p);
+        try {
+            return pool.invoke(ForkJoinTask.adapt(() -> argsort(keys, p)));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public static int[] parallelArgsort(double[] keys, int p) {
+        ForkJoinPool pool = new ForkJoinPool(p);
+        try {
+            return pool.invoke(ForkJoinTask.adapt(() -> argsort(keys, p)));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @param keys
+     * @param p number of cores, with more than one this has to be called from a task of a ForkJoinPool
+     * @return the indices in the order of their keys
+     */
+    static int[] argsort(int[] keys, int p) {
+        long[] copy = new long[keys.length];
+        Tasks.forEachRange(keys.length, p, (from, to) -> {
+            for (int i = (int) from; i < to; i++) {
+                copy[i] = keys[i];
+            }
+        });
+        return argsortKeys(copy, Integer.BYTES, p);
+    }
+
+    static int[] argsort(long[] keys, int p) {
+        return argsortKeys(keys.clone(), Long.BYTES, p);
+    }
+
+    static int[] argsort(double[] keys, int p) {
+        return argsortKeys(toSortable(keys, p), Long.BYTES, p);
+    }
+
+    /**
+     * @param keys which are overwritten
+     * @param keyBytes
+     * @param p
+     * @return the indices in the order of the keys
+     */
+    private static int[] argsortKeys(long[] keys, int keyBytes, int p) {
+        int[] indices = new int[keys.length];
+        Tasks.forEachRange(keys.length, p, (from, to) -> {
+            for (int i = (int) from; i < to; i++) {
+                indices[i] = i;
+            }
+        });
+        return (int[]) radixSort(keys, indices, keyBytes, p)[1];
+    }
+
+    /**
+     * @param a
+     * @param order as returned by argsort
+     * @return a new array with result[i] = a[order[i]]
+     */
+    public static int[] permute(int[] a, int[] order) {
+        int[] result = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            result[i] = a[order[i]];
+        }
+        return result;
+    }
+
+    public static long[] permute(long[] a, int[] order) {
+        long[] result = new long[order.length];
+        for (int i = 0; i < order.length; i++) {
+            result[i] = a[order[i]];
+        }
+        return result;
+    }
+
+    public static double[] permute(double[] a, int[] order) {
+        double[] result = new double[order.length];
+        for (int i = 0; i < order.length; i++) {
+            result[i] = a[order[i]];
+        }
+        return result;
+    }
+
+    /**
+     * @param a
+     * @param order as returned by argsort
+     * @return a new array of the same type with result[i] = a[order[i]]
+     */
+    public static <T> T[] permute(T[] a, int[] order) {
+        T[] result = Arrays.copyOf(a, order.length);
+        for (int i = 0; i < order.length; i++) {
+            result[i] = a[order[i]];
+        }
+        return result;
+    }
+
+    /**
+     * maps the doubles to longs whose signed order is the one of Double.compare. The sign bit stays, and for negative
+     * values the other bits are flipped. All NaNs become the canonical NaN, which ends up after positive infinity
+     * @param a
+     * @param p number of cores, with more than one this has to be called from a task of a ForkJoinPool
+     * @return the keys
+     */
+    private static long[] toSortable(double[] a, int p) {
+        long[] keys = new long[a.length];
+        Tasks.forEachRange(a.length, p, (from, to) -> {
+            for (int i = (int) from; i < to; i++) {
+                long bits = Double.doubleToLongBits(a[i]);
+                keys[i] = bits ^ ((bits >> 63) & Long.MAX_VALUE);
+            }
+        });
+        return keys;
+    }
+
+    /**
+     * reverses toSortable
+     * @param keys
+     * @param a receives the doubles
+     * @param p number of cores, with more than one this has to be called from a task of a ForkJoinPool
+     */
+    private static void fromSortable(long[] keys, double[] a, int p) {
+        Tasks.forEachRange(a.length, p, (from, to) -> {
+            for (int i = (int) from; i < to; i++) {
+                a[i] = Double.longBitsToDouble(keys[i] ^ ((keys[i] >> 63) & Long.MAX_VALUE));
+            }
+        });
+    }
+}
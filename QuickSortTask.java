@@ -0,0 +1,92 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * sorts a subarray using parallel QuickSort, independently of the type of the array, which is only accessed through
+ * the given partition and sequential sort. After each partition, the smaller subarray is forked so that idle cores
+ * can steal it and the larger one is partitioned further by this task, which bounds the depth of nested tasks by
+ * log n. Subarrays up to CUTOFF are sorted sequentially, as forking them costs more than sorting them
+ */
+public class QuickSortTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    // subarrays of parallel QuickSort up to this size are sorted sequentially instead of being split into tasks
+    static final int CUTOFF = 1 << 13;
+
+    /**
+     * partitions a subarray
+     */
+    interface Partition {
+        /**
+         * @param start (inclusive)
+         * @param end (inclusive)
+         * @return index of the pivot element
+         */
+        long partition(long start, long end);
+    }
+
+    /**
+     * sorts a subarray sequentially
+     */
+    interface Sort {
+        /**
+         * @param start (inclusive)
+         * @param end (inclusive)
+         */
+        void sort(long start, long end);
+    }
+
+    private final Partition partition;
+    private final Sort sort;
+    // (inclusive)
+    private final long start;
+    // (inclusive)
+    private final long end;
+    // receives the forked tasks, may be null
+    private final SortStats stats;
+
+    /**
+     * @param partition
+     * @param sort
+     * @param start where the subarray starts (inclusive)
+     * @param end where the subarray ends (inclusive)
+     * @param stats may be null
+     */
+    QuickSortTask(Partition partition, Sort sort, long start, long end, SortStats stats) {
+        this.partition = partition;
+        this.sort = sort;
+        this.start = start;
+        this.end = end;
+        this.stats = stats;
+    }
+
+    @Override
+    protected void compute() {
+        List<QuickSortTask> forked = new ArrayList<>();
+        long from = start;
+        long to = end;
+        while (to - from + 1 > CUTOFF) {
+            long pivotIndex = partition.partition(from, to);
+            QuickSortTask task;
+            if (pivotIndex - from < to - pivotIndex) {
+                task = new QuickSortTask(partition, sort, from, pivotIndex - 1, stats);
+                from = pivotIndex + 1;
+            } else {
+                task = new QuickSortTask(partition, sort, pivotIndex + 1, to, stats);
+                to = pivotIndex - 1;
+            }
+            task.fork();
+            forked.add(task);
+        }
+        sort.sort(from, to);
+        if (stats != null) {
+            stats.addTasks(forked.size());
+        }
+
+        for (int i = forked.size() - 1; i >= 0; i--) {
+            forked.get(i).join();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package main;
+
+import java.nio.ByteBuffer;
+
+/**
+ * describes the fixed-width records of a binary file. A record starts with a big-endian key of 4 or 8 bytes, which
+ * is compared as a signed number, followed by an optional payload. In main memory, records are kept in int arrays
+ * exactly as they are laid out in the file, so a record takes getWidth() consecutive ints and a long key is split into
+ * its high and low int
+ */
+public class RecordFormat {
+    public static final RecordFormat INT = new RecordFormat(Integer.BYTES, 0);
+    public static final RecordFormat LONG = new RecordFormat(Long.BYTES, 0);
+    // 8 byte key followed by an 8 byte payload
+    public static final RecordFormat LONG_KEY_PAYLOAD = new RecordFormat(Long.BYTES, Long.BYTES);
+
+    private final int keyInts;
+    private final int width;
+
+    private RecordFormat(int keyBytes, int payloadBytes) {
+        this.keyInts = keyBytes / Integer.BYTES;
+        this.width = (keyBytes + payloadBytes) / Integer.BYTES;
+    }
+
+    /**
+     * @param keyBytes 4 or 8
+     * @param payloadBytes a multiple of 4
+     * @return the format of records consisting of a key and a payload
+     */
+    public static RecordFormat keyPayload(int keyBytes, int payloadBytes) {
+        if (keyBytes != Integer.BYTES && keyBytes != Long.BYTES) {
+            throw new IllegalArgumentException("keys have to be 4 or 8 bytes long");
+        }
+        if (payloadBytes < 0 || payloadBytes % Integer.BYTES != 0) {
+            throw new IllegalArgumentException("the payload has to be a multiple of 4 bytes long");
+        }
+        return new RecordFormat(keyBytes, payloadBytes);
+    }
+
+    /**
+     * @return the size of a record in bytes
+     */
+    public int getRecordSize() {
+        return width * Integer.BYTES;
+    }
+
+    /**
+     * @return the number of ints a record takes in main memory
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the size of the key in bytes
+     */
+    public int getKeySize() {
+        return keyInts * Integer.BYTES;
+    }
+
+    /**
+     * @param a
+     * @param i index of the first int of the record
+     * @return the key of the record
+     */
+    public long key(int[] a, int i) {
+        if (keyInts == 1) {
+            return a[i];
+        }
+        return ((long) a[i] << 32) | (a[i + 1] & 0xffffffffL);
+    }
+
+    /**
+     * stores the key in the record
+     * @param a
+     * @param i index of the first int of the record
+     * @param key
+     */
+    public void setKey(int[] a, int i, long key) {
+        if (keyInts == 1) {
+            a[i] = (int) key;
+        } else {
+            a[i] = (int) (key >>> 32);
+            a[i + 1] = (int) key;
+        }
+    }
+
+    /**
+     * @param reader
+     * @return the key of the current record of the reader
+     */
+    public long key(RunReader reader) {
+        if (keyInts == 1) {
+            return reader.peek(0);
+        }
+        return ((long) reader.peek(0) << 32) | (reader.peek(1) & 0xffffffffL);
+    }
+
+    /**
+     * @param buffer
+     * @param index of the first byte of the record
+     * @return the key of the record
+     */
+    public long key(ByteBuffer buffer, int index) {
+        return keyInts == 1 ? buffer.getInt(index) : buffer.getLong(index);
+    }
+}
@@ -0,0 +1,31 @@
+package main;
+
+/**
+ * a sorted data run inside a file
+ */
+public class Run {
+    // offset of the run inside the file, in bytes
+    private final long start;
+    // in bytes
+    private final long length;
+    // number of records, which only follows from the length if the run isn't compressed
+    private final long records;
+
+    public Run(long start, long length, long records) {
+        this.start = start;
+        this.length = length;
+        this.records = records;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+}
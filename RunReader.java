@@ -0,0 +1,43 @@
+package main;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * reads the elements of a data run block by block
+ */
+public interface RunReader extends Closeable {
+    /**
+     * @return whether the run has elements left
+     */
+    boolean hasNext();
+
+    /**
+     * @return the current element without advancing
+     */
+    int peek();
+
+    /**
+     * looks ahead without advancing. As long as the block size is a multiple of the record size, a record never
+     * spans two blocks, so every int of the current record can be accessed this way
+     * @param offset
+     * @return the element offset positions behind the current one, inside the current block
+     */
+    int peek(int offset);
+
+    /**
+     * @return the current element, afterwards the reader points to the next one
+     * @throws IOException
+     */
+    int next() throws IOException;
+
+    /**
+     * reads up to n elements into the array
+     * @param a
+     * @param from index of the first element to write
+     * @param n
+     * @return the number of elements read, which is less than n only at the end of the run
+     * @throws IOException
+     */
+    int read(int[] a, int from, int n) throws IOException;
+}
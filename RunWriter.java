@@ -0,0 +1,35 @@
+package main;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * collects elements in an output buffer of block size and writes it out once it is full. Closing the writer flushes
+ * the remaining elements
+ */
+public interface RunWriter extends Closeable {
+    void write(int element) throws IOException;
+
+    /**
+     * writes the elements a[from..from + n)
+     * @param a
+     * @param from
+     * @param n
+     * @throws IOException
+     */
+    void write(int[] a, int from, int n) throws IOException;
+
+    /**
+     * ends the current data run, so the following elements start a new one
+     * @return the size of the output in bytes once everything written so far has been flushed, which is where
+     * the next run starts
+     * @throws IOException
+     */
+    long endRun() throws IOException;
+
+    /**
+     * writes everything written so far through to the file, so it is kept if the process dies
+     * @throws IOException
+     */
+    void sync() throws IOException;
+}
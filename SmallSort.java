@@ -0,0 +1,295 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * branch-free kernels for the small ranges at the bottom of the sorting algorithms: a bitonic sorting network for up
+ * to MAX_NETWORK_SIZE ints or longs and a block partition. Their comparisons only select values or compute offsets,
+ * so their cost doesn't depend on how well the branch predictor guesses the order of random keys, and the JIT can
+ * turn them into conditional moves. They are written in plain Java instead of with the Vector API, which is still an
+ * incubator module that has to be added to the compiler and the JVM explicitly
+ */
+public class SmallSort {
+    // largest subarray that is sorted by a network
+    public static final int MAX_NETWORK_SIZE = 64;
+    // number of elements whose comparisons with the pivot are recorded at once by the block partition
+    private static final int BLOCK = 64;
+
+    // NETWORKS[n] holds the comparators of the network for n elements as pairs of indices i < j, after which
+    // a[i] <= a[j]
+    private static final int[][] NETWORKS = new int[MAX_NETWORK_SIZE + 1][];
+
+    static {
+        for (int n = 0; n <= MAX_NETWORK_SIZE; n++) {
+            NETWORKS[n] = network(n);
+        }
+    }
+
+    /**
+     * builds the bitonic sorting network for the next power of two above n, which sorts blocks of size 2, 4, 8, ...
+     * by bitonic merges of two sorted halves. The smaller element always goes to the lower index, so the comparators
+     * that reach beyond n can be dropped: they would only compare with padding that is greater than every element
+     * @param n
+     * @return the comparators as pairs of indices
+     */
+    private static int[] network(int n) {
+        int[] comparators = new int[16];
+        int count = 0;
+        for (int size = 2; size < 2 * n; size *= 2) {
+            // the first stage of a merge compares the halves of every block mirrored, which turns two ascending
+            // halves into a bitonic sequence, and the following stages clean halves of ever smaller blocks
+            for (int stride = size / 2; stride > 0; stride /= 2) {
+                for (int i = 0; i < n; i++) {
+                    int offset = i % (2 * stride);
+                    if (offset >= stride) {
+                        continue;
+                    }
+                    int j = stride == size / 2 ? i - offset + size - 1 - offset : i + stride;
+                    if (j < n) {
+                        if (count + 2 > comparators.length) {
+                            comparators = Arrays.copyOf(comparators, 2 * comparators.length);
+                        }
+                        comparators[count++] = i;
+                        comparators[count++] = j;
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(comparators, count);
+    }
+
+    /**
+     * sorts the subarray with a sorting network, with InsertionSort if it is larger than MAX_NETWORK_SIZE. Sorted
+     * subarrays are left alone, since the network would cost the same as for random ones
+     * @param a
+     * @param start (inclusive)
+     * @param end (inclusive)
+     */
+    public static void sort(int[] a, int start, int end) {
+        int n = end - start + 1;
+        if (n > MAX_NETWORK_SIZE) {
+            Sorter.insertionSort(a, start, end);
+            return;
+        }
+        int sorted = start + 1;
+        while (sorted <= end && a[sorted - 1] <= a[sorted]) {
+            sorted++;
+        }
+        if (sorted > end) {
+            return;
+        }
+        int[] comparators = NETWORKS[Math.max(0, n)];
+        for (int c = 0; c < comparators.length; c += 2) {
+            int i = start + comparators[c];
+            int j = start + comparators[c + 1];
+            int x = a[i];
+            int y = a[j];
+            a[i] = Math.min(x, y);
+            a[j] = Math.max(x, y);
+        }
+    }
+
+    /**
+     * same as sort(int[], start, end) for longs
+     * @param a
+     * @param start (inclusive)
+     * @param end (inclusive)
+     */
+    public static void sort(long[] a, int start, int end) {
+        int n = end - start + 1;
+        if (n > MAX_NETWORK_SIZE) {
+            insertionSort(a, start, end);
+            return;
+        }
+        int sorted = start + 1;
+        while (sorted <= end && a[sorted - 1] <= a[sorted]) {
+            sorted++;
+        }
+        if (sorted > end) {
+            return;
+        }
+        int[] comparators = NETWORKS[Math.max(0, n)];
+        for (int c = 0; c < comparators.length; c += 2) {
+            int i = start + comparators[c];
+            int j = start + comparators[c + 1];
+            long x = a[i];
+            long y = a[j];
+            a[i] = Math.min(x, y);
+            a[j] = Math.max(x, y);
+        }
+    }
+
+    /**
+     * partitions the subarray around the pivot like the scans of Hoare's partition: every element smaller than the
+     * pivot ends up left, every greater one right of the returned index, and elements equal to the pivot may end up
+     * on both sides, so many duplicates don't lead to unbalanced partitions. Blocks of BLOCK elements from both ends
+     * are first compared with the pivot, which only records the offsets of the elements that have to be swapped,
+     * and then the recorded pairs are swapped. Only the last few blocks are scanned with branches (BlockQuicksort by
+     * Edelkamp and Weiss)
+     * @param a
+     * @param start (inclusive)
+     * @param end (inclusive)
+     * @param pivot
+     * @return the index of the first element of the right side
+     */
+    public static int partition(int[] a, int start, int end, int pivot) {
+        int i = start;
+        int j = end;
+        if (j - i + 1 > 2 * BLOCK) {
+            int[] leftOffsets = new int[BLOCK];
+            int[] rightOffsets = new int[BLOCK];
+            int leftCount = 0;
+            int rightCount = 0;
+            int leftFirst = 0;
+            int rightFirst = 0;
+            // the blocks [i, i + BLOCK) and (j - BLOCK, j] don't overlap, left of i everything is <= pivot and
+            // right of j everything is >= pivot
+            while (j - i + 1 > 2 * BLOCK) {
+                if (leftCount == 0) {
+                    leftFirst = 0;
+                    for (int k = 0; k < BLOCK; k++) {
+                        leftOffsets[leftCount] = k;
+                        leftCount += a[i + k] >= pivot ? 1 : 0;
+                    }
+                }
+                if (rightCount == 0) {
+                    rightFirst = 0;
+                    for (int k = 0; k < BLOCK; k++) {
+                        rightOffsets[rightCount] = k;
+                        rightCount += a[j - k] <= pivot ? 1 : 0;
+                    }
+                }
+
+                int swaps = Math.min(leftCount, rightCount);
+                for (int k = 0; k < swaps; k++) {
+                    swap(a, i + leftOffsets[leftFirst + k], j - rightOffsets[rightFirst + k]);
+                }
+                leftCount -= swaps;
+                rightCount -= swaps;
+                leftFirst += swaps;
+                rightFirst += swaps;
+                if (leftCount == 0) {
+                    i += BLOCK;
+                }
+                if (rightCount == 0) {
+                    j -= BLOCK;
+                }
+            }
+        }
+
+        // the rest, including a block whose offsets haven't all been swapped, is partitioned by scanning
+        while (i <= j) {
+            while (i <= j && a[i] < pivot) {
+                i++;
+            }
+            while (i <= j && a[j] > pivot) {
+                j--;
+            }
+
+            if (i <= j) {
+                swap(a, i, j);
+                i++;
+                j--;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * same as partition(int[], start, end, pivot) for longs
+     * @param a
+     * @param start (inclusive)
+     * @param end (inclusive)
+     * @param pivot
+     * @return the index of the first element of the right side
+     */
+    public static int partition(long[] a, int start, int end, long pivot) {
+        int i = start;
+        int j = end;
+        if (j - i + 1 > 2 * BLOCK) {
+            int[] leftOffsets = new int[BLOCK];
+            int[] rightOffsets = new int[BLOCK];
+            int leftCount = 0;
+            int rightCount = 0;
+            int leftFirst = 0;
+            int rightFirst = 0;
+            while (j - i + 1 > 2 * BLOCK) {
+                if (leftCount == 0) {
+                    leftFirst = 0;
+                    for (int k = 0; k < BLOCK; k++) {
+                        leftOffsets[leftCount] = k;
+                        leftCount += a[i + k] >= pivot ? 1 : 0;
+                    }
+                }
+                if (rightCount == 0) {
+                    rightFirst = 0;
+                    for (int k = 0; k < BLOCK; k++) {
+                        rightOffsets[rightCount] = k;
+                        rightCount += a[j - k] <= pivot ? 1 : 0;
+                    }
+                }
+
+                int swaps = Math.min(leftCount, rightCount);
+                for (int k = 0; k < swaps; k++) {
+                    swap(a, i + leftOffsets[leftFirst + k], j - rightOffsets[rightFirst + k]);
+                }
+                leftCount -= swaps;
+                rightCount -= swaps;
+                leftFirst += swaps;
+                rightFirst += swaps;
+                if (leftCount == 0) {
+                    i += BLOCK;
+                }
+                if (rightCount == 0) {
+                    j -= BLOCK;
+                }
+            }
+        }
+
+        while (i <= j) {
+            while (i <= j && a[i] < pivot) {
+                i++;
+            }
+            while (i <= j && a[j] > pivot) {
+                j--;
+            }
+
+            if (i <= j) {
+                swap(a, i, j);
+                i++;
+                j--;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * sorts the subarray with InsertionSort
+     * @param a
+     * @param start (inclusive)
+     * @param end (inclusive)
+     */
+    private static void insertionSort(long[] a, int start, int end) {
+        for (int i = start + 1; i <= end; i++) {
+            long element = a[i];
+            int j = i - 1;
+            while (j >= start && a[j] > element) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = element;
+        }
+    }
+
+    private static void swap(int[] a, int i, int j) {
+        int tmp = a[i];
+        a[i] = a[j];
+        a[j] = tmp;
+    }
+
+    private static void swap(long[] a, int i, int j) {
+        long tmp = a[i];
+        a[i] = a[j];
+        a[j] = tmp;
+    }
+}
@@ -0,0 +1,22 @@
+package main;
+
+/**
+ * is notified by emMergeSort about its progress, see Sorter.setListener. The methods are called by the thread that
+ * runs the sort, so they should return quickly
+ */
+public interface SortListener {
+    /**
+     * called after the run formation and after every merge round
+     * @param phase
+     * @param stats of the whole sort so far
+     */
+    default void phaseFinished(SortStats.Phase phase, SortStats stats) {
+    }
+
+    /**
+     * called once the output file is complete
+     * @param stats
+     */
+    default void sortFinished(SortStats stats) {
+    }
+}
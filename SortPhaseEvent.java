@@ -0,0 +1,36 @@
+package main;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for a phase of EM-MergeSort, so a recording shows the rounds next to the I/O, GC and CPU events of the
+ * JVM. Committing it costs next to nothing while no recording is running
+ */
+@Name("main.SortPhase")
+@Label("Sort Phase")
+@Category("Sorting")
+@Description("run formation or merge round of EM-MergeSort")
+public class SortPhaseEvent extends Event {
+    @Label("Round")
+    @Description("0 for the run formation")
+    int round;
+
+    @Label("Input Runs")
+    int inputRuns;
+
+    @Label("Output Runs")
+    int outputRuns;
+
+    @Label("Bytes Read")
+    @DataAmount
+    long bytesRead;
+
+    @Label("Bytes Written")
+    @DataAmount
+    long bytesWritten;
+}
@@ -0,0 +1,377 @@
+package main;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * what happened inside a sort: the time and the bytes read and written of every phase of EM-MergeSort, the latency
+ * of the blocks read through LimitedStream, the tasks and steals of the pool, the balance of the parallel partitions
+ * of QuickSort, the peak usage of the heap and of direct and mapped buffers, and the time spent in garbage
+ * collection. Together they show whether a sort is bound by the disk, the CPU or the GC. The counters may be updated
+ * from several threads at once
+ */
+public class SortStats {
+    // bucket i of the latency histogram counts the reads that took [2^i, 2^(i + 1)) nanoseconds
+    private static final int LATENCY_BUCKETS = 40;
+
+    /**
+     * the run formation or one merge round of EM-MergeSort
+     */
+    public static class Phase {
+        private final int round;
+        private final int inputRuns;
+        private final int outputRuns;
+        private final long bytesRead;
+        private final long bytesWritten;
+        private final long nanos;
+
+        /**
+         * @param round 0 for the run formation
+         * @param inputRuns number of data runs that are merged, 0 for the run formation
+         * @param outputRuns number of data runs that are written
+         * @param bytesRead
+         * @param bytesWritten
+         * @param nanos
+         */
+        public Phase(int round, int inputRuns, int outputRuns, long bytesRead, long bytesWritten, long nanos) {
+            this.round = round;
+            this.inputRuns = inputRuns;
+            this.outputRuns = outputRuns;
+            this.bytesRead = bytesRead;
+            this.bytesWritten = bytesWritten;
+            this.nanos = nanos;
+        }
+
+        public int getRound() {
+            return round;
+        }
+
+        public int getInputRuns() {
+            return inputRuns;
+        }
+
+        public int getOutputRuns() {
+            return outputRuns;
+        }
+
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            return (round == 0 ? "run formation" : "round " + round + ": " + inputRuns + " runs") + " -> "
+                    + outputRuns + " runs, " + bytesRead / Sorter.MIB_TO_B + " MiB read, "
+                    + bytesWritten / Sorter.MIB_TO_B + " MiB written, " + nanos / 1000000 + " ms";
+        }
+    }
+
+    private final List<Phase> phases = Collections.synchronizedList(new ArrayList<>());
+    private final LongAdder[] readLatency = new LongAdder[LATENCY_BUCKETS];
+    private final LongAdder blocksRead = new LongAdder();
+    private final LongAdder blockBytesRead = new LongAdder();
+    private final LongAdder readNanos = new LongAdder();
+    private final LongAdder tasks = new LongAdder();
+    private final LongAdder partitions = new LongAdder();
+    // elements that were partitioned in parallel, and how many of them ended up on the larger side
+    private final LongAdder partitioned = new LongAdder();
+    private final LongAdder largerSide = new LongAdder();
+    // the most direct and mapped buffer bytes seen by sampleBuffers, including those in use at start
+    private final LongAccumulator peakDirectBytes = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator peakMappedBytes = new LongAccumulator(Math::max, 0);
+    private long directBytesStart;
+    private long mappedBytesStart;
+    private volatile long steals = 0;
+    private long startNanos;
+    private long totalNanos = 0;
+    private long gcCountStart;
+    private long gcMillisStart;
+    private long gcCount = 0;
+    private long gcMillis = 0;
+    private long peakHeapBytes = 0;
+
+    public SortStats() {
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            readLatency[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * starts measuring the total time, the garbage collections and the peak heap and buffer usage
+     */
+    public void start() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+        directBytesStart = bufferBytes("direct");
+        mappedBytesStart = bufferBytes("mapped");
+        peakDirectBytes.reset();
+        peakMappedBytes.reset();
+        sampleBuffers();
+        gcCountStart = gcCount();
+        gcMillisStart = gcMillis();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * stops measuring what start started
+     */
+    public void finish() {
+        totalNanos = System.nanoTime() - startNanos;
+        sampleBuffers();
+        gcCount = gcCount() - gcCountStart;
+        gcMillis = gcMillis() - gcMillisStart;
+        peakHeapBytes = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peakHeapBytes += pool.getPeakUsage().getUsed();
+            }
+        }
+    }
+
+    /**
+     * records the bytes of the direct and mapped buffers that are allocated right now. The JVM doesn't track their
+     * peak like that of the heap, so this is called whenever the sort may have allocated one
+     */
+    public void sampleBuffers() {
+        peakDirectBytes.accumulate(bufferBytes("direct"));
+        peakMappedBytes.accumulate(bufferBytes("mapped"));
+    }
+
+    /**
+     * @param name of the buffer pool
+     * @return the bytes of the buffers of the pool as reported by the JVM, 0 if there is no such pool
+     */
+    private static long bufferBytes(String name) {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals(name)) {
+                return Math.max(0, pool.getMemoryUsed());
+            }
+        }
+        return 0;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+
+    public void addPhase(Phase phase) {
+        sampleBuffers();
+        phases.add(phase);
+    }
+
+    /**
+     * records a block that was read through a LimitedStream
+     * @param nanos how long the read took
+     * @param bytes length of the block
+     */
+    public void recordBlockRead(long nanos, int bytes) {
+        int bucket = Math.min(LATENCY_BUCKETS - 1, 63 - Long.numberOfLeadingZeros(Math.max(1, nanos)));
+        readLatency[bucket].increment();
+        blocksRead.increment();
+        blockBytesRead.add(bytes);
+        readNanos.add(nanos);
+    }
+
+    /**
+     * records tasks that were forked into a ForkJoinPool
+     * @param n
+     */
+    public void addTasks(int n) {
+        tasks.add(n);
+    }
+
+    /**
+     * records a parallel partition
+     * @param left number of elements left of the pivot
+     * @param right number of elements right of the pivot
+     */
+    public void recordPartition(long left, long right) {
+        partitions.increment();
+        partitioned.add(left + right);
+        largerSide.add(Math.max(left, right));
+    }
+
+    /**
+     * @param steals number of tasks stolen by the threads of the pool so far
+     */
+    public void setSteals(long steals) {
+        this.steals = steals;
+    }
+
+    /**
+     * @return the run formation and the merge rounds that have been finished, in this order
+     */
+    public List<Phase> getPhases() {
+        synchronized (phases) {
+            return new ArrayList<>(phases);
+        }
+    }
+
+    /**
+     * @return the time the run formation took in nanoseconds, 0 if it was skipped because the sort was resumed
+     */
+    public long getRunFormationNanos() {
+        for (Phase phase : getPhases()) {
+            if (phase.getRound() == 0) {
+                return phase.getNanos();
+            }
+        }
+        return 0;
+    }
+
+    public long getBlocksRead() {
+        return blocksRead.sum();
+    }
+
+    public long getBlockBytesRead() {
+        return blockBytesRead.sum();
+    }
+
+    /**
+     * @return the time spent waiting for blocks read through LimitedStream, in nanoseconds
+     */
+    public long getReadNanos() {
+        return readNanos.sum();
+    }
+
+    /**
+     * @return entry i is the number of block reads that took between 2^i and 2^(i + 1) nanoseconds
+     */
+    public long[] getReadLatencyHistogram() {
+        long[] histogram = new long[LATENCY_BUCKETS];
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            histogram[i] = readLatency[i].sum();
+        }
+        return histogram;
+    }
+
+    /**
+     * @param quantile between 0 and 1
+     * @return an upper bound of the read latency of the given quantile in nanoseconds, 0 if no block was read
+     */
+    public long getReadLatencyQuantile(double quantile) {
+        long[] histogram = getReadLatencyHistogram();
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            seen += histogram[i];
+            if (seen >= rank && seen > 0) {
+                return 2L << i;
+            }
+        }
+        return 0;
+    }
+
+    public long getTasks() {
+        return tasks.sum();
+    }
+
+    public long getSteals() {
+        return steals;
+    }
+
+    public long getPartitions() {
+        return partitions.sum();
+    }
+
+    /**
+     * @return the average share of the elements that ended up on the larger side of a parallel partition, 0.5 is a
+     * perfect split and 1 the worst, 0 if there was none
+     */
+    public double getPartitionImbalance() {
+        long n = partitioned.sum();
+        return n == 0 ? 0 : (double) largerSide.sum() / n;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getGcCount() {
+        return gcCount;
+    }
+
+    public long getGcMillis() {
+        return gcMillis;
+    }
+
+    /**
+     * @return the highest heap usage during the sort, which includes the buffers as well as everything else on the
+     * heap
+     */
+    public long getPeakHeapBytes() {
+        return peakHeapBytes;
+    }
+
+    /**
+     * @return the most bytes of direct buffers, like those of ChannelRunWriter, that were allocated during the sort
+     * on top of those allocated before it. Buffers that are no longer used count until the garbage collector frees
+     * them
+     */
+    public long getPeakDirectBytes() {
+        return Math.max(0, peakDirectBytes.get() - directBytesStart);
+    }
+
+    /**
+     * @return the most bytes of memory-mapped file regions, like the blocks of MappedRunReader, that were mapped
+     * during the sort on top of those mapped before it. Regions that are no longer used count until the garbage
+     * collector unmaps them
+     */
+    public long getPeakMappedBytes() {
+        return Math.max(0, peakMappedBytes.get() - mappedBytesStart);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        for (Phase phase : getPhases()) {
+            s.append(phase).append('\n');
+        }
+        s.append("blocks read: ").append(getBlocksRead()).append(", waiting ").append(getReadNanos() / 1000000)
+                .append(" ms, latency p50 < ").append(getReadLatencyQuantile(0.5) / 1000).append(" us, p99 < ")
+                .append(getReadLatencyQuantile(0.99) / 1000).append(" us\n");
+        s.append("tasks: ").append(getTasks()).append(", steals: ").append(getSteals()).append(", partitions: ")
+                .append(getPartitions()).append(String.format(", imbalance %.2f%n", getPartitionImbalance()));
+        s.append("GC: ").append(getGcCount()).append(" collections, ").append(getGcMillis()).append(" ms, peak heap ")
+                .append(getPeakHeapBytes() / Sorter.MIB_TO_B).append(" MiB, peak direct ")
+                .append(getPeakDirectBytes() / Sorter.MIB_TO_B).append(" MiB, peak mapped ")
+                .append(getPeakMappedBytes() / Sorter.MIB_TO_B).append(" MiB, total ").append(getTotalNanos() / 1000000)
+                .append(" ms");
+        return s.toString();
+    }
+}
@@ -0,0 +1,140 @@
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * answers point and range queries on a file that was sorted by EM-MergeSort. The file is memory-mapped, and a query
+ * does a binary search over its BlockIndex followed by a binary search inside a single block, so it touches one or
+ * two pages of the file. The mapping is split into segments of whole blocks because a single mapping is limited to
+ * 2 GiB, and it stays valid until the reader is garbage collected. Queries may run concurrently from several threads
+ */
+public class SortedFileReader {
+    private final File file;
+    private final BlockIndex index;
+    private final RecordFormat format;
+    private final MappedByteBuffer[] segments;
+    // number of blocks per segment
+    private final int segmentBlocks;
+
+    /**
+     * opens the sorted file together with the index that emMergeSort saved next to it
+     * @param file
+     * @param format
+     * @throws IOException
+     */
+    public SortedFileReader(File file, RecordFormat format) throws IOException {
+        this(file, format, BlockIndex.load(BlockIndex.forFile(file)));
+    }
+
+    /**
+     * @param file
+     * @param format
+     * @param index of the file
+     * @throws IOException
+     */
+    public SortedFileReader(File file, RecordFormat format, BlockIndex index) throws IOException {
+        if (index.getRecordSize() != format.getRecordSize() || index.getKeySize() != format.getKeySize()) {
+            throw new IllegalArgumentException("the index was created for another record format");
+        }
+        this.file = file;
+        this.index = index;
+        this.format = format;
+        int blockSize = index.getBlockSize();
+        segmentBlocks = Integer.MAX_VALUE / blockSize;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() != index.getLength()) {
+                throw new IOException("the index of " + file + " is out of date");
+            }
+            segments = new MappedByteBuffer[(index.getBlocks() + segmentBlocks - 1) / segmentBlocks];
+            for (int s = 0; s < segments.length; s++) {
+                long start = (long) s * segmentBlocks * blockSize;
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(channel.size() - start, (long) segmentBlocks * blockSize));
+            }
+        }
+    }
+
+    /**
+     * @return the number of records in the file
+     */
+    public long getRecords() {
+        return index.getLength() / format.getRecordSize();
+    }
+
+    /**
+     * @param i index of a record
+     * @return its key
+     */
+    public long key(long i) {
+        long position = i * format.getRecordSize();
+        long segmentSize = (long) segmentBlocks * index.getBlockSize();
+        return format.key(segments[(int) (position / segmentSize)], (int) (position % segmentSize));
+    }
+
+    /**
+     * @param key
+     * @return the index of the first record whose key is greater than or equal to the given key, or the number of
+     * records if there is none
+     */
+    public long lowerBound(long key) {
+        int recordsPerBlock = index.getBlockSize() / format.getRecordSize();
+        long start = (long) index.findBlock(key) * recordsPerBlock;
+        // the block either contains the record or it is the first record of the next block
+        long end = Math.min(getRecords(), start + recordsPerBlock);
+        while (start < end) {
+            long i = (start + end) >>> 1;
+            if (key(i) < key) {
+                start = i + 1;
+            } else {
+                end = i;
+            }
+        }
+        return start;
+    }
+
+    /**
+     * @param key
+     * @return the index of the first record whose key is greater than the given key, or the number of records if
+     * there is none
+     */
+    public long upperBound(long key) {
+        return key == Long.MAX_VALUE ? getRecords() : lowerBound(key + 1);
+    }
+
+    /**
+     * @param key
+     * @return whether a record with the key exists
+     */
+    public boolean contains(long key) {
+        long i = lowerBound(key);
+        return i < getRecords() && key(i) == key;
+    }
+
+    /**
+     * @param fromKey (inclusive)
+     * @param toKey (exclusive)
+     * @return the number of records whose key lies in the range
+     */
+    public long count(long fromKey, long toKey) {
+        return Math.max(0, lowerBound(toKey) - lowerBound(fromKey));
+    }
+
+    /**
+     * scans the records whose key lies in the range in sorted order. The reader has to be closed by the caller
+     * @param fromKey (inclusive)
+     * @param toKey (exclusive)
+     * @return a reader of the records, record by record like a data run
+     * @throws IOException
+     */
+    public RunReader range(long fromKey, long toKey) throws IOException {
+        long from = lowerBound(fromKey);
+        long to = Math.max(from, lowerBound(toKey));
+        int recordSize = format.getRecordSize();
+        return new MappedRunReader(file, new Run(from * recordSize, (to - from) * recordSize, to - from),
+                index.getBlockSize());
+    }
+}
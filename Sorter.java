@@ -1,133 +1,407 @@
 package main;
 
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.*;
 
 /**
  * contains the different sorting algorithms
  */
 public class Sorter {
+    public static final int MIB_TO_B = 1024 * 1024;
+    private static final int INT_BYTES = Integer.BYTES;
     private static int threshold = 20000;
-    public static int[] parallelQuickSort(int[] a, int p) throws ExecutionException, InterruptedException {
+    // subarrays of QuickSort and blocks of MergeSort up to this size are sorted with a sorting network
+    private static final int NETWORK_SORT_CUTOFF = SmallSort.MAX_NETWORK_SIZE;
+    // from this size on, the pivot of QuickSort is the median of nine instead of three elements
+    private static final int NINTHER_THRESHOLD = 128;
+    // number of children per node of the heap of replacement selection for int records
+    private static final int INT_HEAP_ARITY = 8;
+    // natural runs of adaptive MergeSort shorter than this are extended with InsertionSort
+    private static final int MIN_RUN = 32;
+    // number of buckets of radix sort, which sorts by one byte per pass
+    private static final int RADIX = 256;
+    // sample sort distributes the elements into this many buckets per core, but at most MAX_SAMPLE_SORT_BUCKETS
+    private static final int SAMPLE_SORT_BUCKETS_PER_CORE = 16;
+    private static final int MAX_SAMPLE_SORT_BUCKETS = 1 << 12;
+    // number of samples per core that are taken from the data runs to choose the splitters of the final merge
+    private static final int OVERSAMPLING = 32;
+
+    private final long ramSize;
+    // number of data runs that are merged at once in each round of EM-MergeSort, 0 means as many as fit into RAM
+    private int fanIn = 0;
+    private RunFormation runFormation = RunFormation.SORT;
+    private IoMode ioMode = IoMode.STREAM;
+    // whether blocks are read ahead and written behind in the background
+    private boolean asyncIo = false;
+    // runs the background I/O while emMergeSort is executed with asyncIo
+    private ExecutorService ioExecutor;
+    // sorts the chunks of the run formation while emMergeSort is executed with more than one core
+    private ParallelSorter chunkSorter;
+    // number of cores used for sorting the chunks during run formation and for the final merge
+    private int threads = 1;
+    private RecordFormat format = RecordFormat.INT;
+    // whether the intermediate data runs are written as compressed blocks
+    private boolean compressRuns = false;
+    // whether emMergeSort saves its progress, so it can be resumed after an interruption
+    private boolean checkpointing = false;
+    // the progress of emMergeSort while it is executed with checkpointing
+    private Manifest manifest;
+    // whether emMergeSort saves a BlockIndex next to the output file
+    private boolean blockIndex = false;
+    // the keys of the BlockIndex, collected while the last round writes the output, null during the other rounds
+    private long[] indexKeys;
+    // is notified about the progress of emMergeSort, may be null
+    private SortListener listener;
+    // metrics of the current or last execution of emMergeSort
+    private SortStats stats;
+
+    /**
+     * how the initial data runs of EM-MergeSort are created
+     */
+    public enum RunFormation {
+        // sort chunks of RAM size in main memory
+        SORT,
+        // stream the input through a heap of RAM size, which yields runs of about twice the RAM size on random
+        // input and a single run on sorted input
+        REPLACEMENT_SELECTION,
+        // sort chunks of RAM size like SORT, but with radix sort on the keys instead of MergeSort
+        RADIX_SORT
+    }
+
+    /**
+     * how EM-MergeSort reads and writes the data runs
+     */
+    public enum IoMode {
+        // LimitedStream and OutputStream, every block is copied into a byte array and converted with a ByteBuffer
+        STREAM,
+        // FileChannel, blocks are read as memory-mapped IntBuffers and written from a direct ByteBuffer
+        MAPPED
+    }
+
+    /**
+     * creates a Sorter for EM-MergeSort
+     * @param ramSizeMiB the size of the main memory the sorter may use, in MiB
+     */
+    public Sorter(int ramSizeMiB) {
+        this.ramSize = (long) ramSizeMiB * MIB_TO_B;
+    }
+
+    /**
+     * sets the number of data runs that are merged at once. Every run needs an input block and the output needs
+     * one more, so the fan-in is capped at RAM size / block size - 1
+     * @param fanIn at least 2, or 0 to use the largest fan-in that fits into RAM
+     */
+    public void setFanIn(int fanIn) {
+        if (fanIn != 0 && fanIn < 2) {
+            throw new IllegalArgumentException("fan-in has to be at least 2");
+        }
+        this.fanIn = fanIn;
+    }
+
+    public void setRunFormation(RunFormation runFormation) {
+        this.runFormation = runFormation;
+    }
+
+    public void setIoMode(IoMode ioMode) {
+        this.ioMode = ioMode;
+    }
+
+    /**
+     * sets the number of cores used by the initial and the final round. With more than one core, the chunks are
+     * sorted with parallel MergeSort in a pipeline, so that while one chunk is sorted the next one is read and the
+     * previous one is written. The pipeline holds three chunks and the buffer of the sort at once, so each chunk
+     * only takes a quarter of the RAM. The final merge splits the key space into p ranges which are merged
+     * independently, each core sharing the RAM for its blocks with the others
+     * @param p
+     */
+    public void setThreads(int p) {
+        if (p < 1) {
+            throw new IllegalArgumentException("at least one core is needed");
+        }
+        this.threads = p;
+    }
+
+    /**
+     * sets the format of the records inside the files sorted by emMergeSort, ints by default
+     * @param format
+     */
+    public void setRecordFormat(RecordFormat format) {
+        this.format = format;
+    }
+
+    /**
+     * enables compression of the intermediate data runs: the keys of each block are stored as varint encoded
+     * differences, see DeltaCodec. Only the output of the last round is written uncompressed. Compressed runs are
+     * always read through LimitedStream, and the final round is merged sequentially because the blocks can't be
+     * shared among the smaller buffers of the cores. Encoding and decoding need an additional buffer per data run of
+     * DeltaCodec.getMaxBlockSize, which is 2 blocks for int records and is taken from the fan-in
+     * @param compressRuns
+     */
+    public void setCompressRuns(boolean compressRuns) {
+        this.compressRuns = compressRuns;
+    }
+
+    /**
+     * enables checkpointing: emMergeSort saves a manifest next to the output file after every data run and every
+     * round, see Manifest. If a sort is interrupted, calling emMergeSort again with the same arguments resumes it from
+     * the last completed data run instead of starting over. Replacement selection and the parallel final merge only
+     * save their progress at the end of the round
+     * @param checkpointing
+     */
+    public void setCheckpointing(boolean checkpointing) {
+        this.checkpointing = checkpointing;
+    }
+
+    /**
+     * enables the block index: emMergeSort saves the key of the first record of every block of the output file in
+     * a BlockIndex next to it, which SortedFileReader uses to answer lookups. The keys are picked out while the last
+     * round writes the output, only if the run formation already produces a single data run, the index is built from
+     * the file afterwards with one read per block
+     * @param blockIndex
+     */
+    public void setBlockIndex(boolean blockIndex) {
+        this.blockIndex = blockIndex;
+    }
+
+    /**
+     * sets the listener that emMergeSort notifies after every phase and at the end. Every phase is also committed as
+     * a SortPhaseEvent to JFR
+     * @param listener may be null
+     */
+    public void setListener(SortListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return the metrics of the current or last execution of emMergeSort, null if it hasn't been called yet. They
+     * are complete once it has returned
+     */
+    public SortStats getStats() {
+        return stats;
+    }
+
+    /**
+     * enables double buffering for every data run and the output: the next block of a run is read and the last
+     * output block is written in the background while the current blocks are merged. This needs two additional
+     * buffers per run, so the maximal fan-in drops to about a third
+     * @param asyncIo
+     */
+    public void setAsyncIo(boolean asyncIo) {
+        this.asyncIo = asyncIo;
+    }
+
+    public static int[] parallelQuickSort(int[] a, int p) {
         return parallelQuickSort(a, p, false);
     }
 
-    public static int[] parallelQuickSort(int[] a, int p, boolean moreP) throws InterruptedException, ExecutionException {
-        ExecutorService executor = new ForkJoinPool(p);
-        int[] buf = new int[a.length];
-        parallelQuickSort(a, p, 0, a.length - 1, buf, executor, moreP);
-        executor.shutdown();
+    /**
+     * sorts the array using parallel QuickSort on a ForkJoinPool. After partitioning, the two subarrays are sorted by
+     * a pair of tasks, one of which is forked so that idle cores can steal it. Subarrays below QuickSortTask.CUTOFF are
+     * sorted sequentially
+     * @param a array to sort
+     * @param p the number of cores
+     * @param moreP whether the parallel partition method should be used
+     * @return the sorted array
+     */
+    public static int[] parallelQuickSort(int[] a, int p, boolean moreP) {
+        ForkJoinPool pool = new ForkJoinPool(p);
+        try {
+            return parallelQuickSort(a, moreP, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * same as parallelQuickSort(a, p, moreP), but runs on the given pool and uses its parallelism as the number of
+     * cores
+     * @param a array to sort
+     * @param moreP whether the parallel partition method should be used
+     * @param pool
+     * @return the sorted array
+     */
+    static int[] parallelQuickSort(int[] a, boolean moreP, ForkJoinPool pool) {
+        return parallelQuickSort(a, moreP, pool, null);
+    }
+
+    /**
+     * same as parallelQuickSort(a, moreP, pool), but records the forked tasks and the parallel partitions
+     * @param a array to sort
+     * @param moreP whether the parallel partition method should be used
+     * @param pool
+     * @param stats may be null
+     * @return the sorted array
+     */
+    static int[] parallelQuickSort(int[] a, boolean moreP, ForkJoinPool pool, SortStats stats) {
+        pool.invoke(quickSortTask(a, pool.getParallelism(), 0, a.length - 1, moreP, stats));
         return a;
     }
 
     /**
-     * Sorts the array using parallel QuickSort
      * @param a array to sort
      * @param p the number of cores
      * @param start where the subarray starts (inclusive)
      * @param end where the subarray ends (inclusive)
-     * @param buf buffer array
-     * @param executor Executerservice for parallelization
      * @param moreP whether the parallel partition method should be used
-     * @return
-     * @throws InterruptedException
-     * @throws ExecutionException
+     * @param stats receives the forked tasks and the parallel partitions, may be null
+     * @return a task that sorts the subarray using parallel QuickSort
      */
-    public static Void parallelQuickSort(int[] a, int p, int start, int end, int[] buf, ExecutorService executor, boolean moreP) throws InterruptedException, ExecutionException {
-        if (start >= end) {
-            return null;
-        }
-
-        int pivotIndex = partitionP(a, p, start, end, buf, executor, moreP);
-
-        Future<Void> future = executor.submit(() -> parallelQuickSort(a, p, start, pivotIndex - 1, buf, executor, moreP));
-        parallelQuickSort(a, p, pivotIndex + 1, end, buf, executor, moreP);
-        future.get();
-        return null;
+    private static QuickSortTask quickSortTask(int[] a, int p, int start, int end, boolean moreP, SortStats stats) {
+        return new QuickSortTask((from, to) -> partitionP(a, p, (int) from, (int) to, moreP, stats),
+                (from, to) -> quickSort(a, (int) from, (int) to), start, end, stats);
     }
 
     /**
-     * partitions the array into two subarrays in parallel
+     * partitions the array into two subarrays in parallel and in place. The range is split into p chunks which are
+     * partitioned independently. Afterwards, the elements greater than the pivot that lie left of the final
+     * position of the pivot are swapped with the smaller ones right of it, the pairs being split evenly among the
+     * cores. Only arrays of size p are needed besides the tasks. Has to be called from a task of a ForkJoinPool
      * @param a array to sort
      * @param p the number of cores
      * @param start where the subarray starts (inclusive)
      * @param end where the subarray ends (inclusive)
-     * @param buf buffer array
-     * @param executor Executerservice for parallelization
      * @param moreP whether the parallel partition method should be used
+     * @param stats receives the size of both sides of parallel partitions, may be null
      * @return index of the pivot element
-     * @throws InterruptedException
-     * @throws ExecutionException
      */
-    private static int partitionP(int[] a, int p, int start, int end, int[] buf, ExecutorService executor, boolean moreP) throws InterruptedException, ExecutionException {
+    private static int partitionP(int[] a, int p, int start, int end, boolean moreP, SortStats stats) {
         // if the size is below the threshold, use sequential partitioning for better performance
         if (!moreP || end - start + 1 < threshold) {
             return partition(a, start, end);
         }
-        List<Callable<int[]>> tasks = new ArrayList<>(p);
-        int subArraySize = (int) Math.ceil((double) (end - start + 1) / p);
+        choosePivot(a, start, end);
+        int pivot = a[end];
 
-        for (int i = start; i <= end; i += subArraySize) {
-            int finalI = i;
-            tasks.add(() -> partitionAndCount(a, finalI, Math.min(finalI + subArraySize - 1, end - 1), a[end]));
+        // chunk c covers [bounds[c], bounds[c + 1]) and holds lower[c] elements <= pivot at its beginning once it
+        // is partitioned
+        int[] bounds = new int[p + 1];
+        int[] lower = new int[p];
+        for (int c = 0; c <= p; c++) {
+            bounds[c] = start + (int) ((long) c * (end - start) / p);
         }
+        Tasks.invokeAll(p, c -> lower[c] = partitionAndCount(a, bounds[c], bounds[c + 1] - 1, pivot));
 
-        List<Future<int[]>> results = executor.invokeAll(tasks);
-        tasks.clear();
-
-        int offset = start;
-        for (int i = 0; i < results.size(); i++) {
-            int finalI = i;
-            int finalOffset = offset;
-            tasks.add(() -> {System.arraycopy(a, start + finalI * subArraySize, buf, finalOffset, results.get(finalI).get()[0]); return null;});
-            offset += results.get(i).get()[0];
+        int split = start;
+        for (int c = 0; c < p; c++) {
+            split += lower[c];
         }
+        // leftRank[c] is the number of greater elements left of the split inside the chunks before c, rightRank[c]
+        // the number of smaller elements right of it
+        int[] leftRank = new int[p + 1];
+        int[] rightRank = new int[p + 1];
+        for (int c = 0; c < p; c++) {
+            int greaterFrom = bounds[c] + lower[c];
+            leftRank[c + 1] = leftRank[c] + Math.max(0, Math.min(bounds[c + 1], split) - greaterFrom);
+            rightRank[c + 1] = rightRank[c] + Math.max(0, greaterFrom - Math.max(bounds[c], split));
+        }
+        int misplaced = leftRank[p];
+        int finalSplit = split;
+        Tasks.invokeAll(p, s -> swapMisplaced(a, bounds, lower, leftRank, rightRank, finalSplit,
+                (int) ((long) s * misplaced / p), (int) ((long) (s + 1) * misplaced / p)));
 
-        int pivotIndex = offset;
-        buf[pivotIndex] = a[end];
-        offset++;
-
-        for (int i = 0; i < results.size(); i++) {
-            int finalI = i;
-            int finalOffset1 = offset;
-            tasks.add(() -> {System.arraycopy(a, start + finalI * subArraySize + results.get(finalI).get()[0], buf, finalOffset1, results.get(finalI).get()[1]); return null;});
-            offset += results.get(i).get()[1];
+        swap(a, split, end);
+        if (stats != null) {
+            stats.addTasks(2 * p);
+            stats.recordPartition(split - start, end - split);
         }
+        return split;
+    }
 
-        executor.invokeAll(tasks);
+    /**
+     * swaps the misplaced elements of the given ranks after the chunks have been partitioned by partitionP: the
+     * k-th greater element left of the split is swapped with the k-th smaller element right of it
+     * @param a
+     * @param bounds
+     * @param lower
+     * @param leftRank
+     * @param rightRank
+     * @param split where the greater elements start once all chunks are merged
+     * @param from rank of the first pair (inclusive)
+     * @param to rank of the last pair (exclusive)
+     */
+    private static void swapMisplaced(int[] a, int[] bounds, int[] lower, int[] leftRank, int[] rightRank,
+                                      int split, int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        int c = 0;
+        while (leftRank[c + 1] <= from) {
+            c++;
+        }
+        int d = 0;
+        while (rightRank[d + 1] <= from) {
+            d++;
+        }
+        int i = bounds[c] + lower[c] + from - leftRank[c];
+        int j = Math.max(bounds[d], split) + from - rightRank[d];
 
-        System.arraycopy(buf, start, a, start, end - start + 1);
-        return pivotIndex;
+        for (int k = from; k < to; k++) {
+            while (k >= leftRank[c + 1]) {
+                c++;
+                i = bounds[c] + lower[c];
+            }
+            while (k >= rightRank[d + 1]) {
+                d++;
+                j = Math.max(bounds[d], split);
+            }
+            swap(a, i++, j++);
+        }
     }
 
+
     /**
-     * partitions the subarray according to the given pivot element and returns the number of elements smaller
-     * and greater than the pivot
+     * partitions the subarray according to the given pivot element. Elements equal to the pivot may end up on
+     * both sides
      * @param a
      * @param start where the subarray starts (inclusive)
      * @param end where the subarray ends (inclusive)
      * @param pivot
-     * @return an array containing [number of elements smaller, number of elements greater]
+     * @return the number of elements on the left side, which are smaller than or equal to the pivot
      */
-    private static int[] partitionAndCount(int[] a, int start, int end, int pivot) {
-        int i = start;
-        int j = end;
+    private static int partitionAndCount(int[] a, int start, int end, int pivot) {
+        return SmallSort.partition(a, start, end, pivot) - start;
+    }
 
-        while (i <= j) {
-            while (i <= j && a[i] <= pivot) {
-                i++;
-            }
-            while (i <= j && a[j] >= pivot) {
-                j--;
-            }
+    /**
+     * moves the pivot to the end of the subarray. The pivot is the median of the first, the middle and the last
+     * element, for large subarrays the median of three such medians (Tukey's ninther), so QuickSort stays
+     * O(n log n) on sorted and reverse sorted input
+     * @param a
+     * @param start (inclusive)
+     * @param end (inclusive)
+     */
+    private static void choosePivot(int[] a, int start, int end) {
+        int n = end - start + 1;
+        int mid = start + n / 2;
+        int pivotIndex;
+        if (n >= NINTHER_THRESHOLD) {
+            int step = n / 8;
+            pivotIndex = median(a, median(a, start, start + step, start + 2 * step), median(a, mid - step, mid,
+                    mid + step), median(a, end - 2 * step, end - step, end));
+        } else {
+            pivotIndex = median(a, start, mid, end);
+        }
+        swap(a, pivotIndex, end);
+    }
 
-            if (i <= j) {
-                swap(a, i, j);
-            }
+    /**
+     * @return the index of the median of a[i], a[j] and a[k]
+     */
+    private static int median(int[] a, int i, int j, int k) {
+        if (a[i] < a[j]) {
+            return a[j] < a[k] ? j : (a[i] < a[k] ? k : i);
         }
-        int nLower = i - start;
-        return new int[] {nLower, end - start + 1 - nLower};
+        return a[i] < a[k] ? i : (a[j] < a[k] ? k : j);
     }
 
     public static int[] parallelMergeSort(int[] a, int p) throws InterruptedException {
@@ -148,123 +422,63 @@ public class Sorter {
      * @throws InterruptedException
      */
     public static int[] parallelMergeSort(int[] a, int p, int n, boolean moreP) throws InterruptedException {
-
-        int subArraySize;
-        int start;
-        int[] buf = new int[a.length];
-
-        ExecutorService executor = new ForkJoinPool(p);
-        List<Callable<Void>> tasks = new ArrayList<>(n / 2);
-
-        for (subArraySize = 1; subArraySize <= n - 1; subArraySize *= 2) {
-            for (start = 0; start <= n - 1; start += 2 * subArraySize) {
-                int mid = Math.min(start + subArraySize - 1, n - 1);
-                int end = Math.min(start + 2 * subArraySize - 1, n - 1);
-
-                int[] finalA = a;
-                int[] finalBuf = buf;
-                int finalStart = start;
-                // if there aren't enough cores per subarray, use sequential merge instead for better performance
-                if (!moreP || p / Math.ceil((double) n / (2 * subArraySize)) < 2) {
-                    tasks.add(() -> {merge(finalA, finalBuf, finalStart, mid, end); return null;});
-                } else {
-                    tasks.add(() -> mergeP(finalA, finalBuf, finalStart, mid, end, executor));
-                }
-            }
-            executor.invokeAll(tasks);
-            tasks.clear();
-
-            int[] tmp = a;
-            a = buf;
-            buf = tmp;
+        ForkJoinPool pool = new ForkJoinPool(p);
+        try {
+            return parallelMergeSort(a, n, moreP, pool);
+        } finally {
+            pool.shutdown();
         }
-
-        executor.shutdown();
-
-        return a;
     }
 
     /**
-     * merge the two subarrays in parallel
-     * @param a source array
-     * @param buf buffer array
-     * @param leftStart (inclusive)
-     * @param leftEnd (inclusive)
-     * @param rightEnd (inclusive)
-     * @param executor ExecutorService for parallelization
-     * @return
+     * same as parallelMergeSort(a, p, n, moreP), but runs on the given pool and uses its parallelism as the number of
+     * cores
+     * @param a array to sort
+     * @param n
+     * @param moreP whether parallel merge should be used
+     * @param pool
+     * @return the sorted array, which is either a or a buffer of the same length
      * @throws InterruptedException
      */
-    private static Void mergeP(int[] a, int[] buf, int leftStart, int leftEnd, int rightEnd, ExecutorService executor)
-            throws InterruptedException {
-        if (2 * (leftEnd - leftStart + 1) < threshold) {
-            merge(a, buf, leftStart, leftEnd, rightEnd);
-            return null;
-        }
+    static int[] parallelMergeSort(int[] a, int n, boolean moreP, ForkJoinPool pool) throws InterruptedException {
+        int p = pool.getParallelism();
+        return pool.invoke(ForkJoinTask.adapt(() -> {
+            int blocks = (n + NETWORK_SORT_CUTOFF - 1) / NETWORK_SORT_CUTOFF;
+            Tasks.forEachRange(blocks, p, (from, to) -> sortBlocks(a, (int) from * NETWORK_SORT_CUTOFF,
+                    (int) Math.min(n, to * NETWORK_SORT_CUTOFF)));
 
-        List<Callable<Void>> tasks = new ArrayList<>(rightEnd - leftStart + 1);
-        for (int i = leftStart; i <= rightEnd; i++) {
-            int finalI = i;
-            tasks.add(() -> writeToCorrectPosition(a, buf, leftStart, leftEnd, rightEnd, finalI));
-        }
-        executor.invokeAll(tasks);
-        return null;
+            int[] src = a;
+            int[] buf = new int[a.length];
+            for (int subArraySize = NETWORK_SORT_CUTOFF; subArraySize < n; subArraySize *= 2) {
+                int[] from = src;
+                int[] to = buf;
+                ParallelMerge.mergeRound(n, subArraySize, p, moreP, (i, j) -> from[(int) i] <= from[(int) j],
+                        (i, leftEnd, j, rightEnd, k) -> merge(from, to, (int) i, (int) leftEnd, (int) j,
+                                (int) rightEnd, (int) k));
+                src = to;
+                buf = from;
+            }
+            return src;
+        }));
     }
 
     /**
-     * computes the correct position of the given element inside the resulting subarray by computing its position
-     * inside the other subarray and taking its current position into account
-     * @param a
-     * @param buf
+     * merges the two subarrays in parallel with ParallelMerge.mergeP, unless they are smaller than the threshold. Has
+     * to be called from a task of a ForkJoinPool
+     * @param a source array
+     * @param buf buffer array
      * @param leftStart (inclusive)
      * @param leftEnd (inclusive)
      * @param rightEnd (inclusive)
-     * @param currentPos
-     * @return
-     */
-    private static Void writeToCorrectPosition(int[] a, int[] buf, int leftStart, int leftEnd, int rightEnd,
-                                               int currentPos) {
-        int posInSubArr;
-        int start;
-        int end;
-        if (currentPos <= leftEnd) {
-            posInSubArr =  currentPos - leftStart;
-            start = leftEnd + 1;
-            end = rightEnd;
-        } else {
-            posInSubArr = currentPos - (leftEnd + 1);
-            start = leftStart;
-            end = leftEnd;
-        }
-
-        int i = binarySearch(a, a[currentPos], start, end);
-
-        buf[posInSubArr + i - start + leftStart] = a[currentPos];
-
-        return null;
-    }
-
-    /**
-     * looks for where the element would be put inside the given subarray
-     * @param a
-     * @param element the element to insert
-     * @param start (inclusive)
-     * @param end (inclusive)
-     * @return the index, where the element would be inserted
+     * @param p number of segments
      */
-    private static int binarySearch(int[] a, int element, int start, int end) {
-
-        int i;
-        while (start < end) {
-            i = (start + end) / 2;
-            if (element < a[i]) {
-                end = i;
-            } else {
-                start = i + 1;
-            }
+    private static void mergeP(int[] a, int[] buf, int leftStart, int leftEnd, int rightEnd, int p) {
+        if (rightEnd - leftStart + 1 < threshold) {
+            merge(a, buf, leftStart, leftEnd, rightEnd);
+            return;
         }
-
-        return element < a[start] ? start : start + 1;
+        ParallelMerge.mergeP((i, j) -> a[(int) i] <= a[(int) j], (i, iEnd, j, jEnd, k) -> merge(a, buf, (int) i,
+                (int) iEnd, (int) j, (int) jEnd, (int) k), leftStart, leftEnd, rightEnd, p);
     }
 
     public static int[] quickSort(int[] a) {
@@ -273,46 +487,57 @@ public class Sorter {
     }
 
     /**
-     * classical sequential QuickSort. After completion, the array a is sorted.
+     * classical sequential QuickSort. After completion, the array a is sorted. Small subarrays are sorted with a
+     * sorting network, and only the smaller subarray is sorted recursively, which bounds the recursion depth by log n
      * @param a
      * @param start
      * @param end
      */
     public static void quickSort(int[] a, int start, int end) {
-        if (start >= end) {
-            return;
+        while (end - start + 1 > NETWORK_SORT_CUTOFF) {
+            int pivotIndex = partition(a, start, end);
+            if (pivotIndex - start < end - pivotIndex) {
+                quickSort(a, start, pivotIndex - 1);
+                start = pivotIndex + 1;
+            } else {
+                quickSort(a, pivotIndex + 1, end);
+                end = pivotIndex - 1;
+            }
         }
-
-        int pivotIndex = partition(a, start, end);
-        quickSort(a, start, pivotIndex - 1);
-        quickSort(a, pivotIndex + 1, end);
+        SmallSort.sort(a, start, end);
     }
 
     /**
-     * uses last element as pivot and positions it correctly. Every element smaller than the pivot ends up
-     * on the left side, every element greater on the right side of the pivot
+     * sorts the subarray with InsertionSort
      * @param a
      * @param start (inclusive)
      * @param end (inclusive)
-     * @return index of the pivot element
      */
-    private static int partition(int[] a, int start, int end) {
-        int i = start;
-        int j = end - 1;
-
-        while (i <= j) {
-            while (i <= j && a[i] <= a[end]) {
-                i++;
-            }
-            while (i <= j && a[j] >= a[end]) {
+    public static void insertionSort(int[] a, int start, int end) {
+        for (int i = start + 1; i <= end; i++) {
+            int element = a[i];
+            int j = i - 1;
+            while (j >= start && a[j] > element) {
+                a[j + 1] = a[j];
                 j--;
             }
-
-            if (i <= j) {
-                swap(a, i, j);
-            }
+            a[j + 1] = element;
         }
+    }
 
+    /**
+     * chooses a pivot with choosePivot, which is moved to the end, and positions it correctly. Every element smaller
+     * than the pivot ends up on the left side, every element greater on the right side of the pivot. Elements equal
+     * to the pivot stop both scans, so they are spread over both sides and many duplicates don't lead to quadratic
+     * running time. The scans are done block by block without branches by SmallSort.partition
+     * @param a
+     * @param start (inclusive)
+     * @param end (inclusive)
+     * @return index of the pivot element
+     */
+    private static int partition(int[] a, int start, int end) {
+        choosePivot(a, start, end);
+        int i = SmallSort.partition(a, start, end - 1, a[end]);
         swap(a, i, end);
         return i;
     }
@@ -323,57 +548,532 @@ public class Sorter {
         a[j] = tmp;
     }
 
-    public static int[] mergeSort(int[] a) {
-        return mergeSort(a, a.length);
+    /**
+     * rearranges the array with quickselect so that a[k] is the element that would be there if the array was sorted.
+     * Every element left of it is smaller than or equal to it, every element right of it greater than or equal.
+     * Only the subarray that contains rank k is partitioned further, so this takes expected linear time
+     * @param a
+     * @param k rank, 0 is the smallest element
+     * @return a[k]
+     */
+    public static int select(int[] a, int k) {
+        checkRank(a, k);
+        select(a, 1, 0, a.length - 1, k, false);
+        return a[k];
+    }
+
+    public static int parallelSelect(int[] a, int k, int p) {
+        ForkJoinPool pool = new ForkJoinPool(p);
+        try {
+            return parallelSelect(a, k, pool);
+        } finally {
+            pool.shutdown();
+        }
     }
 
     /**
-     * classical sequential MergeSort
+     * same as select(a, k), but large subarrays are partitioned in parallel with partitionP
      * @param a
-     * @param n
-     * @return the sorted array
+     * @param k rank, 0 is the smallest element
+     * @param pool
+     * @return a[k]
      */
-    public static int[] mergeSort(int[] a, int n) {
-        int subArraySize;
-        int start;
-        int[] buf = new int[a.length];
+    static int parallelSelect(int[] a, int k, ForkJoinPool pool) {
+        checkRank(a, k);
+        int p = pool.getParallelism();
+        pool.invoke(ForkJoinTask.adapt(() -> select(a, p, 0, a.length - 1, k, true)));
+        return a[k];
+    }
 
-        for (subArraySize = 1; subArraySize <= n - 1; subArraySize *= 2) {
-            for (start = 0; start <= n - 1; start += 2 * subArraySize) {
-                int mid = Math.min(start + subArraySize - 1, n - 1);
-                int end = Math.min(start + 2 * subArraySize - 1, n - 1);
-                merge(a, buf, start, mid, end);
-            }
-            int[] tmp = a;
-            a = buf;
-            buf = tmp;
+    /**
+     * rearranges the array so that its first k elements are the k smallest ones in sorted order, the remaining
+     * elements are left in no particular order
+     * @param a
+     * @param k number of elements to sort, between 0 and a.length
+     * @return a
+     */
+    public static int[] partialSort(int[] a, int k) {
+        checkLength(a, k);
+        if (k > 0) {
+            select(a, k - 1);
+            quickSort(a, 0, k - 2);
+        }
+        return a;
+    }
+
+    public static int[] parallelPartialSort(int[] a, int k, int p) {
+        ForkJoinPool pool = new ForkJoinPool(p);
+        try {
+            return parallelPartialSort(a, k, pool);
+        } finally {
+            pool.shutdown();
         }
+    }
 
+    /**
+     * same as partialSort(a, k), but selects in parallel and sorts the k smallest elements with parallel QuickSort
+     * @param a
+     * @param k number of elements to sort, between 0 and a.length
+     * @param pool
+     * @return a
+     */
+    static int[] parallelPartialSort(int[] a, int k, ForkJoinPool pool) {
+        checkLength(a, k);
+        if (k == 0) {
+            return a;
+        }
+        parallelSelect(a, k - 1, pool);
+        pool.invoke(quickSortTask(a, pool.getParallelism(), 0, k - 2, true, null));
         return a;
     }
 
-    private static void merge(int[] a, int[] buf, int leftStart, int leftEnd, int rightEnd) {
-        int i, j, k;
+    /**
+     * selects several ranks at once: afterwards a[k] is the element that would be there if the array was sorted for
+     * every given rank k, and the elements between two such ranks lie between them. After a partition, only the
+     * subarrays that still contain ranks are partitioned further, so percentiles cost far less than a full sort
+     * @param a
+     * @param ranks 0 is the smallest element, may be unordered and contain duplicates
+     * @return the selected elements in the order of ranks
+     */
+    public static int[] select(int[] a, int[] ranks) {
+        int[] sorted = sortRanks(a, ranks);
+        multiSelect(a, 1, 0, a.length - 1, sorted, 0, sorted.length, false);
+        return elementsAt(a, ranks);
+    }
 
-        i = leftStart;
-        j = leftEnd + 1;
-        k = leftStart;
-        while (i <= leftEnd && j <= rightEnd) {
-            if (a[i] <= a[j]) {
-                buf[k] = a[i];
-                i++;
+    public static int[] parallelSelect(int[] a, int[] ranks, int p) {
+        ForkJoinPool pool = new ForkJoinPool(p);
+        try {
+            return parallelSelect(a, ranks, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * same as select(a, ranks), but large subarrays are partitioned with partitionP and both sides of a partition
+     * are processed by their own tasks
+     * @param a
+     * @param ranks 0 is the smallest element, may be unordered and contain duplicates
+     * @param pool
+     * @return the selected elements in the order of ranks
+     */
+    static int[] parallelSelect(int[] a, int[] ranks, ForkJoinPool pool) {
+        int[] sorted = sortRanks(a, ranks);
+        int p = pool.getParallelism();
+        pool.invoke(ForkJoinTask.adapt(() -> multiSelect(a, p, 0, a.length - 1, sorted, 0, sorted.length, true)));
+        return elementsAt(a, ranks);
+    }
+
+    /**
+     * quickselect on the subarray
+     * @param a
+     * @param p the number of cores, only used in parallel
+     * @param start (inclusive)
+     * @param end (inclusive)
+     * @param k rank inside the whole array, start <= k <= end
+     * @param parallel whether large subarrays are partitioned with partitionP, which has to be called from a task of
+     * a ForkJoinPool then
+     */
+    private static void select(int[] a, int p, int start, int end, int k, boolean parallel) {
+        while (end - start + 1 > NETWORK_SORT_CUTOFF) {
+            int pivotIndex = partitionP(a, p, start, end, parallel, null);
+            if (k < pivotIndex) {
+                end = pivotIndex - 1;
+            } else if (k > pivotIndex) {
+                start = pivotIndex + 1;
             } else {
-                buf[k] = a[j];
-                j++;
+                return;
             }
-            k++;
         }
+        SmallSort.sort(a, start, end);
+    }
 
-        while (i <= leftEnd) {
-            buf[k] = a[i];
-            i++;
-            k++;
-        }
+    /**
+     * selects the ranks ranks[from..to), which lie inside the subarray
+     * @param a
+     * @param p the number of cores, only used in parallel
+     * @param start (inclusive)
+     * @param end (inclusive)
+     * @param ranks sorted
+     * @param from (inclusive)
+     * @param to (exclusive)
+     * @param parallel whether the subarray is processed in parallel, which has to be done from a task of a
+     * ForkJoinPool then
+     */
+    private static void multiSelect(int[] a, int p, int start, int end, int[] ranks, int from, int to,
+                                    boolean parallel) {
+        if (from >= to) {
+            return;
+        }
+        if (to - from == 1) {
+            select(a, p, start, end, ranks[from], parallel);
+            return;
+        }
+        if (end - start + 1 <= NETWORK_SORT_CUTOFF) {
+            SmallSort.sort(a, start, end);
+            return;
+        }
+
+        int pivotIndex = partitionP(a, p, start, end, parallel, null);
+        // ranks[from..left) lie left of the pivot, ranks[right..to) right of it
+        int left = lowerBound(ranks, from, to, pivotIndex);
+        int right = left < to && ranks[left] == pivotIndex ? left + 1 : left;
+        if (parallel && end - start + 1 > QuickSortTask.CUTOFF) {
+            Tasks.invokeAll(2, side -> {
+                if (side == 0) {
+                    multiSelect(a, p, start, pivotIndex - 1, ranks, from, left, true);
+                } else {
+                    multiSelect(a, p, pivotIndex + 1, end, ranks, right, to, true);
+                }
+            });
+        } else {
+            multiSelect(a, p, start, pivotIndex - 1, ranks, from, left, parallel);
+            multiSelect(a, p, pivotIndex + 1, end, ranks, right, to, parallel);
+        }
+    }
+
+    /**
+     * @param a sorted
+     * @param from (inclusive)
+     * @param to (exclusive)
+     * @param key
+     * @return the first index of a[from..to) whose element is not smaller than key, to if there is none
+     */
+    private static int lowerBound(int[] a, int from, int to, int key) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (a[mid] < key) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
+        }
+        return from;
+    }
+
+    /**
+     * @param a
+     * @param ranks
+     * @return the ranks in sorted order without duplicates
+     */
+    private static int[] sortRanks(int[] a, int[] ranks) {
+        for (int k : ranks) {
+            checkRank(a, k);
+        }
+        return Arrays.stream(ranks).sorted().distinct().toArray();
+    }
+
+    private static int[] elementsAt(int[] a, int[] ranks) {
+        int[] elements = new int[ranks.length];
+        for (int i = 0; i < ranks.length; i++) {
+            elements[i] = a[ranks[i]];
+        }
+        return elements;
+    }
+
+    private static void checkRank(int[] a, int k) {
+        if (k < 0 || k >= a.length) {
+            throw new IllegalArgumentException("rank " + k + " is outside of an array of length " + a.length);
+        }
+    }
+
+    private static void checkLength(int[] a, int k) {
+        if (k < 0 || k > a.length) {
+            throw new IllegalArgumentException("cannot sort " + k + " elements of an array of length " + a.length);
+        }
+    }
+
+    /**
+     * finds the k smallest ints of a binary file in a single pass, so the file may be larger than the main memory.
+     * The file is read block by block through a LimitedStream, and every element that is smaller than the k-th
+     * smallest element seen so far is collected in a buffer of 2k elements. Whenever the buffer is full, it is cut
+     * down to its k smallest elements with quickselect, which takes amortized constant time per element
+     * @param inFileName
+     * @param k
+     * @param blockSize in bytes, a multiple of 4
+     * @return the k smallest elements in sorted order, all elements if the file has fewer
+     * @throws IOException
+     */
+    public static int[] topK(String inFileName, int k, int blockSize) throws IOException {
+        if (k < 0 || k > (Integer.MAX_VALUE - 8) / 2) {
+            throw new IllegalArgumentException("k has to be between 0 and " + (Integer.MAX_VALUE - 8) / 2);
+        }
+        if (k == 0) {
+            return new int[0];
+        }
+        int[] buffer = new int[2 * k];
+        int size = 0;
+        // the k-th smallest element so far, only valid once the buffer has been cut down
+        boolean bounded = false;
+        int bound = 0;
+        byte[] block = new byte[blockSize];
+        IntBuffer ints = ByteBuffer.wrap(block).asIntBuffer();
+
+        try (LimitedStream stream = new LimitedStream(new FileInputStream(inFileName))) {
+            stream.initialize(Integer.MAX_VALUE, blockSize);
+            while (stream.readBlock(block)) {
+                int count = stream.getLastBlockLength() / INT_BYTES;
+                for (int i = 0; i < count; i++) {
+                    int element = ints.get(i);
+                    if (bounded && element >= bound) {
+                        continue;
+                    }
+                    buffer[size++] = element;
+                    if (size == buffer.length) {
+                        select(buffer, 1, 0, size - 1, k - 1, false);
+                        size = k;
+                        bound = buffer[k - 1];
+                        bounded = true;
+                    }
+                }
+            }
+        }
+
+        if (size > k) {
+            select(buffer, 1, 0, size - 1, k - 1, false);
+            size = k;
+        }
+        quickSort(buffer, 0, size - 1);
+        return Arrays.copyOf(buffer, size);
+    }
+
+    public static int[] mergeSort(int[] a) {
+        return mergeSort(a, a.length);
+    }
+
+    /**
+     * classical sequential MergeSort, which starts with blocks sorted by sortBlocks
+     * @param a
+     * @param n
+     * @return the sorted array
+     */
+    public static int[] mergeSort(int[] a, int n) {
+        int subArraySize;
+        int start;
+        int[] buf = new int[a.length];
+
+        sortBlocks(a, 0, n);
+        for (subArraySize = NETWORK_SORT_CUTOFF; subArraySize <= n - 1; subArraySize *= 2) {
+            for (start = 0; start <= n - 1; start += 2 * subArraySize) {
+                int mid = Math.min(start + subArraySize - 1, n - 1);
+                int end = Math.min(start + 2 * subArraySize - 1, n - 1);
+                merge(a, buf, start, mid, end);
+            }
+            int[] tmp = a;
+            a = buf;
+            buf = tmp;
+        }
+
+        return a;
+    }
+
+    public static int[] adaptiveMergeSort(int[] a) {
+        return adaptiveMergeSort(a, a.length);
+    }
+
+    /**
+     * natural MergeSort, which adapts to presorted input: the array is split into its ascending and descending runs,
+     * the descending ones are reversed, and adjacent runs are merged pairwise until one is left. Runs shorter than
+     * MIN_RUN are extended with InsertionSort. With r runs, the sort takes O(n log r) time, so a sorted or reverse
+     * sorted array only needs a single scan
+     * @param a
+     * @param n
+     * @return the sorted array, which is either a or a buffer of the same length
+     */
+    public static int[] adaptiveMergeSort(int[] a, int n) {
+        int[] starts = new int[n / MIN_RUN + 2];
+        int runs = findRuns(a, 0, n, starts, 0);
+        return mergeRuns(a, n, starts, runs, 1);
+    }
+
+    public static int[] parallelAdaptiveMergeSort(int[] a, int p) {
+        ForkJoinPool pool = new ForkJoinPool(p);
+        try {
+            return parallelAdaptiveMergeSort(a, a.length, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * parallel version of adaptiveMergeSort: every core looks for the runs of its chunk, and the merges of each round
+     * are distributed among the cores. Once there are fewer merges than cores, each merge is split by mergeP
+     * @param a
+     * @param n
+     * @param pool
+     * @return the sorted array, which is either a or a buffer of the same length
+     */
+    static int[] parallelAdaptiveMergeSort(int[] a, int n, ForkJoinPool pool) {
+        int p = pool.getParallelism();
+        return pool.invoke(ForkJoinTask.adapt(() -> {
+            int[] bounds = new int[p + 1];
+            for (int t = 0; t <= p; t++) {
+                bounds[t] = (int) ((long) t * n / p);
+            }
+            int[][] chunkStarts = new int[p][];
+            int[] chunkRuns = new int[p];
+            Tasks.invokeAll(p, t -> {
+                chunkStarts[t] = new int[(bounds[t + 1] - bounds[t]) / MIN_RUN + 2];
+                chunkRuns[t] = findRuns(a, bounds[t], bounds[t + 1], chunkStarts[t], 0);
+            });
+
+            // runs that continue across the border of two chunks are simply merged again
+            int runs = 0;
+            for (int t = 0; t < p; t++) {
+                runs += chunkRuns[t];
+            }
+            int[] starts = new int[runs + 1];
+            runs = 0;
+            for (int t = 0; t < p; t++) {
+                System.arraycopy(chunkStarts[t], 0, starts, runs, chunkRuns[t]);
+                runs += chunkRuns[t];
+            }
+            return mergeRuns(a, n, starts, runs, p);
+        }));
+    }
+
+    /**
+     * finds the natural runs of a[from..to): maximal ascending or strictly descending sequences, of which the
+     * descending ones are reversed. Strictly descending runs keep the sort stable
+     * @param a
+     * @param from (inclusive)
+     * @param to (exclusive)
+     * @param starts receives the starts of the runs, which are at most (to - from) / MIN_RUN + 1
+     * @param count number of runs already stored in starts
+     * @return the new number of runs
+     */
+    private static int findRuns(int[] a, int from, int to, int[] starts, int count) {
+        int i = from;
+        while (i < to) {
+            starts[count++] = i;
+            int end = i + 1;
+            if (end < to && a[end] < a[i]) {
+                while (end < to && a[end] < a[end - 1]) {
+                    end++;
+                }
+                reverse(a, i, end - 1);
+            } else {
+                while (end < to && a[end] >= a[end - 1]) {
+                    end++;
+                }
+            }
+            // short runs are extended, which bounds the number of runs
+            if (end - i < MIN_RUN) {
+                end = Math.min(to, i + MIN_RUN);
+                insertionSort(a, i, end - 1);
+            }
+            i = end;
+        }
+        return count;
+    }
+
+    private static void reverse(int[] a, int start, int end) {
+        while (start < end) {
+            swap(a, start++, end--);
+        }
+    }
+
+    /**
+     * merges adjacent runs pairwise until only one run is left
+     * @param a
+     * @param n
+     * @param starts the starts of the runs, with room for one more entry
+     * @param runs number of runs
+     * @param p number of cores, with more than one this has to be called from a task of a ForkJoinPool
+     * @return the sorted array, which is either a or a buffer of the same length
+     */
+    private static int[] mergeRuns(int[] a, int n, int[] starts, int runs, int p) {
+        if (runs <= 1) {
+            return a;
+        }
+        int[] buf = new int[a.length];
+        starts[runs] = n;
+
+        while (runs > 1) {
+            int[] src = a;
+            int[] dst = buf;
+            int merges = (runs + 1) / 2;
+            int coresPerMerge = p / merges;
+            int lastRuns = runs;
+            Tasks.forEach(merges, p, m -> {
+                int r = 2 * m;
+                if (r + 1 < lastRuns) {
+                    if (coresPerMerge >= 2) {
+                        mergeP(src, dst, starts[r], starts[r + 1] - 1, starts[r + 2] - 1, coresPerMerge);
+                    } else {
+                        merge(src, dst, starts[r], starts[r + 1] - 1, starts[r + 2] - 1);
+                    }
+                } else {
+                    System.arraycopy(src, starts[r], dst, starts[r], starts[r + 1] - starts[r]);
+                }
+            });
+
+            // every merged run starts where its left run started
+            for (int m = 0; m < merges; m++) {
+                starts[m] = starts[2 * m];
+            }
+            runs = merges;
+            starts[runs] = n;
+
+            a = dst;
+            buf = src;
+        }
+
+        return a;
+    }
+
+    /**
+     * sorts every block of NETWORK_SORT_CUTOFF elements of a[from..to) with a sorting network, which replaces the
+     * first rounds of MergeSort
+     * @param a
+     * @param from (inclusive), a multiple of NETWORK_SORT_CUTOFF
+     * @param to (exclusive)
+     */
+    private static void sortBlocks(int[] a, int from, int to) {
+        for (int start = from; start < to; start += NETWORK_SORT_CUTOFF) {
+            SmallSort.sort(a, start, Math.min(start + NETWORK_SORT_CUTOFF, to) - 1);
+        }
+    }
+
+    private static void merge(int[] a, int[] buf, int leftStart, int leftEnd, int rightEnd) {
+        merge(a, buf, leftStart, leftEnd, leftEnd + 1, rightEnd, leftStart);
+    }
+
+    /**
+     * merges the sorted subarrays a[i..leftEnd] and a[j..rightEnd] into buf, starting at index k
+     * @param a
+     * @param buf
+     * @param i start of the left subarray (inclusive)
+     * @param leftEnd (inclusive)
+     * @param j start of the right subarray (inclusive)
+     * @param rightEnd (inclusive)
+     * @param k
+     */
+    private static void merge(int[] a, int[] buf, int i, int leftEnd, int j, int rightEnd, int k) {
+        // subarrays that are already in order, as in presorted input, are only copied
+        if (i <= leftEnd && j <= rightEnd && a[leftEnd] <= a[j]) {
+            System.arraycopy(a, i, buf, k, leftEnd - i + 1);
+            System.arraycopy(a, j, buf, k + leftEnd - i + 1, rightEnd - j + 1);
+            return;
+        }
+        // the element and the side it is taken from are selected without branches, which the JIT turns into
+        // conditional moves, so merging random keys doesn't suffer from mispredicted branches
+        while (i <= leftEnd && j <= rightEnd) {
+            int left = a[i];
+            int right = a[j];
+            boolean takeLeft = left <= right;
+            buf[k] = takeLeft ? left : right;
+            i += takeLeft ? 1 : 0;
+            j += takeLeft ? 0 : 1;
+            k++;
+        }
+
+        while (i <= leftEnd) {
+            buf[k] = a[i];
+            i++;
+            k++;
+        }
 
         while (j <= rightEnd) {
             buf[k] = a[j];
@@ -381,4 +1081,1430 @@ public class Sorter {
             k++;
         }
     }
+
+    /**
+     * classical sequential MergeSort for records of the given format, which are stored in the int array as described
+     * in RecordFormat. It starts with blocks sorted by sortBlocks
+     * @param a
+     * @param n number of records
+     * @param format
+     * @return the sorted array
+     */
+    public static int[] mergeSort(int[] a, int n, RecordFormat format) {
+        int subArraySize;
+        int start;
+        int[] buf = new int[a.length];
+
+        sortBlocks(a, 0, n, format);
+        for (subArraySize = NETWORK_SORT_CUTOFF; subArraySize <= n - 1; subArraySize *= 2) {
+            for (start = 0; start <= n - 1; start += 2 * subArraySize) {
+                int mid = Math.min(start + subArraySize - 1, n - 1);
+                int end = Math.min(start + 2 * subArraySize - 1, n - 1);
+                merge(a, buf, start, mid, mid + 1, end, start, format);
+            }
+            int[] tmp = a;
+            a = buf;
+            buf = tmp;
+        }
+
+        return a;
+    }
+
+    /**
+     * parallel MergeSort for records of the given format, the merges of each round are distributed among the cores
+     * by ParallelMerge.mergeRound
+     * @param a
+     * @param p number of cores
+     * @param n number of records
+     * @param format
+     * @return the sorted array
+     * @throws InterruptedException
+     */
+    public static int[] parallelMergeSort(int[] a, int p, int n, RecordFormat format) throws InterruptedException {
+        ForkJoinPool pool = new ForkJoinPool(p);
+        try {
+            return parallelMergeSort(a, n, format, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * same as parallelMergeSort(a, p, n, format), but runs on the given pool
+     * @param a
+     * @param n number of records
+     * @param format
+     * @param pool
+     * @return the sorted array
+     * @throws InterruptedException
+     */
+    static int[] parallelMergeSort(int[] a, int n, RecordFormat format, ForkJoinPool pool)
+            throws InterruptedException {
+        int p = pool.getParallelism();
+        int w = format.getWidth();
+        return pool.invoke(ForkJoinTask.adapt(() -> {
+            int blocks = (n + NETWORK_SORT_CUTOFF - 1) / NETWORK_SORT_CUTOFF;
+            Tasks.forEachRange(blocks, p, (from, to) -> sortBlocks(a, (int) from * NETWORK_SORT_CUTOFF,
+                    (int) Math.min(n, to * NETWORK_SORT_CUTOFF), format));
+
+            int[] src = a;
+            int[] buf = new int[a.length];
+            for (int subArraySize = NETWORK_SORT_CUTOFF; subArraySize < n; subArraySize *= 2) {
+                int[] from = src;
+                int[] to = buf;
+                ParallelMerge.mergeRound(n, subArraySize, p, true,
+                        (i, j) -> format.key(from, (int) i * w) <= format.key(from, (int) j * w),
+                        (i, leftEnd, j, rightEnd, k) -> merge(from, to, (int) i, (int) leftEnd, (int) j,
+                                (int) rightEnd, (int) k, format));
+                src = to;
+                buf = from;
+            }
+            return src;
+        }));
+    }
+
+    /**
+     * sorts every block of NETWORK_SORT_CUTOFF records of a[from..to) like sortBlocks(a, from, to). Records of a
+     * single int are sorted with a sorting network, wider ones with a stable InsertionSort by key, as the network
+     * would neither keep records together nor keep records with equal keys in order
+     * @param a
+     * @param from index of the first record (inclusive), a multiple of NETWORK_SORT_CUTOFF
+     * @param to index of the last record (exclusive)
+     * @param format
+     */
+    private static void sortBlocks(int[] a, int from, int to, RecordFormat format) {
+        if (format.getWidth() == 1) {
+            sortBlocks(a, from, to);
+            return;
+        }
+        int[] record = new int[format.getWidth()];
+        for (int start = from; start < to; start += NETWORK_SORT_CUTOFF) {
+            insertionSort(a, start, Math.min(start + NETWORK_SORT_CUTOFF, to) - 1, format, record);
+        }
+    }
+
+    /**
+     * sorts the records a[start..end] stably by their keys with InsertionSort
+     * @param a
+     * @param start index of the first record (inclusive)
+     * @param end index of the last record (inclusive)
+     * @param format
+     * @param record receives the record that is inserted, of length format.getWidth()
+     */
+    private static void insertionSort(int[] a, int start, int end, RecordFormat format, int[] record) {
+        int w = format.getWidth();
+        for (int i = start + 1; i <= end; i++) {
+            long key = format.key(a, i * w);
+            int j = i - 1;
+            while (j >= start && format.key(a, j * w) > key) {
+                j--;
+            }
+            if (j < i - 1) {
+                System.arraycopy(a, i * w, record, 0, w);
+                System.arraycopy(a, (j + 1) * w, a, (j + 2) * w, (i - j - 1) * w);
+                System.arraycopy(record, 0, a, (j + 1) * w, w);
+            }
+        }
+    }
+
+    /**
+     * merges the sorted subarrays of records a[left..leftEnd] and a[right..rightEnd] by their keys into buf,
+     * starting at record out
+     * @param a
+     * @param buf
+     * @param left index of the first record of the left subarray (inclusive)
+     * @param leftEnd (inclusive)
+     * @param right index of the first record of the right subarray (inclusive)
+     * @param rightEnd (inclusive)
+     * @param out
+     * @param format
+     */
+    private static void merge(int[] a, int[] buf, int left, int leftEnd, int right, int rightEnd, int out,
+                              RecordFormat format) {
+        int w = format.getWidth();
+        int i = left * w;
+        int j = right * w;
+        int k = out * w;
+        int iEnd = (leftEnd + 1) * w;
+        int jEnd = (rightEnd + 1) * w;
+
+        while (i < iEnd && j < jEnd) {
+            if (format.key(a, i) <= format.key(a, j)) {
+                System.arraycopy(a, i, buf, k, w);
+                i += w;
+            } else {
+                System.arraycopy(a, j, buf, k, w);
+                j += w;
+            }
+            k += w;
+        }
+
+        System.arraycopy(a, i, buf, k, iEnd - i);
+        k += iEnd - i;
+        System.arraycopy(a, j, buf, k, jEnd - j);
+    }
+
+    /**
+     * sorts the array using parallel sample sort: p * k - 1 splitters are chosen from a random sample and stored as
+     * an implicit search tree, which classifies every element into one of p * k buckets without branches. The cores
+     * count the buckets of their chunks, scatter the elements into a buffer in a single pass, and the buckets are
+     * then sorted independently with parallel QuickSort
+     * @param a array to sort
+     * @param p number of cores
+     * @return the sorted array, which is either a or a buffer of the same length
+     */
+    public static int[] sampleSort(int[] a, int p) {
+        ForkJoinPool pool = new ForkJoinPool(p);
+        try {
+            return sampleSort(a, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * same as sampleSort(a, p), but runs on the given pool and uses its parallelism as the number of cores
+     * @param a
+     * @param pool
+     * @return the sorted array, which is either a or a buffer of the same length
+     */
+    static int[] sampleSort(int[] a, ForkJoinPool pool) {
+        int p = pool.getParallelism();
+        if (a.length < threshold) {
+            quickSort(a);
+            return a;
+        }
+        return pool.invoke(ForkJoinTask.adapt(() -> sampleSortTask(a, p)));
+    }
+
+    /**
+     * has to be called from a task of a ForkJoinPool
+     * @param a
+     * @param p number of cores
+     * @return the sorted array, which is either a or a buffer of the same length
+     */
+    private static int[] sampleSortTask(int[] a, int p) {
+        int n = a.length;
+        // a power of two, so the search tree is complete
+        int buckets = Math.min(MAX_SAMPLE_SORT_BUCKETS, Integer.highestOneBit(p * SAMPLE_SORT_BUCKETS_PER_CORE));
+        int levels = Integer.numberOfTrailingZeros(buckets);
+
+        int[] sample = new int[buckets * OVERSAMPLING];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < sample.length; i++) {
+            sample[i] = a[random.nextInt(n)];
+        }
+        quickSort(sample);
+        int[] splitters = new int[buckets - 1];
+        for (int i = 0; i < splitters.length; i++) {
+            splitters[i] = sample[(i + 1) * OVERSAMPLING];
+        }
+        // tree[1] is the root and the children of node j are 2j and 2j + 1
+        int[] tree = new int[buckets];
+        buildTree(tree, 1, splitters, 0, splitters.length);
+
+        // count[t][b] is the number of elements of chunk t in bucket b, and becomes the position they are written to
+        int[][] count = new int[p][buckets];
+        int[] bounds = new int[p + 1];
+        for (int t = 0; t <= p; t++) {
+            bounds[t] = (int) ((long) t * n / p);
+        }
+        Tasks.invokeAll(p, t -> {
+            for (int i = bounds[t]; i < bounds[t + 1]; i++) {
+                count[t][classify(tree, levels, a[i])]++;
+            }
+        });
+
+        int[] bucketStart = new int[buckets + 1];
+        int sum = 0;
+        for (int b = 0; b < buckets; b++) {
+            bucketStart[b] = sum;
+            for (int t = 0; t < p; t++) {
+                int c = count[t][b];
+                count[t][b] = sum;
+                sum += c;
+            }
+        }
+        bucketStart[buckets] = n;
+
+        int[] buf = new int[n];
+        Tasks.invokeAll(p, t -> {
+            for (int i = bounds[t]; i < bounds[t + 1]; i++) {
+                buf[count[t][classify(tree, levels, a[i])]++] = a[i];
+            }
+        });
+
+        // a bucket that got too many elements because of duplicates is split further by QuickSort
+        Tasks.invokeAll(buckets, b -> quickSortTask(buf, p, bucketStart[b], bucketStart[b + 1] - 1, false, null)
+                .invoke());
+        return buf;
+    }
+
+    /**
+     * stores the splitters as a complete binary search tree in the implicit layout of a heap
+     * @param tree
+     * @param node
+     * @param splitters
+     * @param from (inclusive)
+     * @param to (exclusive)
+     */
+    private static void buildTree(int[] tree, int node, int[] splitters, int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        tree[node] = splitters[mid];
+        buildTree(tree, 2 * node, splitters, from, mid);
+        buildTree(tree, 2 * node + 1, splitters, mid + 1, to);
+    }
+
+    /**
+     * descends the search tree, where the comparison only decides which child comes next and compiles to a
+     * conditional move instead of a branch
+     * @param tree
+     * @param levels
+     * @param element
+     * @return the bucket of the element, elements equal to a splitter belong to the bucket left of it
+     */
+    private static int classify(int[] tree, int levels, int element) {
+        int j = 1;
+        for (int l = 0; l < levels; l++) {
+            j = 2 * j + (element > tree[j] ? 1 : 0);
+        }
+        return j - tree.length;
+    }
+
+    public static int[] radixSort(int[] a) {
+        return radixSort(a, a.length, RecordFormat.INT);
+    }
+
+    /**
+     * sorts the first n records of the array with LSD radix sort, one byte of the key per pass. The sign bit of
+     * the most significant byte is flipped, so negative keys come first. Passes in which all keys have the same
+     * byte are skipped. The sort is stable
+     * @param a
+     * @param n number of records
+     * @param format
+     * @return the sorted array, which is either a or a buffer of the same length
+     */
+    public static int[] radixSort(int[] a, int n, RecordFormat format) {
+        int w = format.getWidth();
+        int[] buf = new int[a.length];
+        int[] count = new int[RADIX];
+
+        for (int digit = 0; digit < format.getKeySize(); digit++) {
+            Arrays.fill(count, 0);
+            for (int i = 0; i < n * w; i += w) {
+                count[digit(format.key(a, i), digit, format)]++;
+            }
+            if (n == 0 || count[digit(format.key(a, 0), digit, format)] == n) {
+                continue;
+            }
+
+            // the counts become the positions the records with each byte start at
+            int sum = 0;
+            for (int d = 0; d < RADIX; d++) {
+                int c = count[d];
+                count[d] = sum;
+                sum += c;
+            }
+            for (int i = 0; i < n * w; i += w) {
+                int pos = count[digit(format.key(a, i), digit, format)]++ * w;
+                copyRecord(a, i, buf, pos, w);
+            }
+
+            int[] tmp = a;
+            a = buf;
+            buf = tmp;
+        }
+
+        return a;
+    }
+
+    public static int[] parallelRadixSort(int[] a, int p) {
+        return parallelRadixSort(a, p, a.length, RecordFormat.INT);
+    }
+
+    /**
+     * parallel version of radixSort: the records are split into p chunks, every core counts the bytes of its chunk
+     * in its own histogram, and the prefix sums over all histograms tell each core where to scatter the records of
+     * its chunk. The sort stays stable
+     * @param a
+     * @param p number of cores
+     * @param n number of records
+     * @param format
+     * @return the sorted array, which is either a or a buffer of the same length
+     */
+    public static int[] parallelRadixSort(int[] a, int p, int n, RecordFormat format) {
+        ForkJoinPool pool = new ForkJoinPool(p);
+        try {
+            return parallelRadixSort(a, n, format, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * same as parallelRadixSort(a, p, n, format), but runs on the given pool and uses its parallelism as the number
+     * of cores
+     * @param a
+     * @param n number of records
+     * @param format
+     * @param pool
+     * @return the sorted array, which is either a or a buffer of the same length
+     */
+    static int[] parallelRadixSort(int[] a, int n, RecordFormat format, ForkJoinPool pool) {
+        int p = pool.getParallelism();
+        return pool.invoke(ForkJoinTask.adapt(() -> parallelRadixSort(a, n, format, p)));
+    }
+
+    /**
+     * has to be called from a task of a ForkJoinPool
+     * @param a
+     * @param n number of records
+     * @param format
+     * @param p number of cores
+     * @return the sorted array, which is either a or a buffer of the same length
+     */
+    private static int[] parallelRadixSort(int[] a, int n, RecordFormat format, int p) {
+        int w = format.getWidth();
+        int[] buf = new int[a.length];
+        // the histogram of every core, which becomes the positions its records with each byte are written to
+        int[][] count = new int[p][RADIX];
+        int[] bounds = new int[p + 1];
+        for (int t = 0; t <= p; t++) {
+            bounds[t] = (int) ((long) t * n / p) * w;
+        }
+
+        for (int digit = 0; digit < format.getKeySize(); digit++) {
+            int[] src = a;
+            int[] dst = buf;
+            int finalDigit = digit;
+            Tasks.invokeAll(p, t -> {
+                Arrays.fill(count[t], 0);
+                for (int i = bounds[t]; i < bounds[t + 1]; i += w) {
+                    count[t][digit(format.key(src, i), finalDigit, format)]++;
+                }
+            });
+
+            // the records are ordered by their byte first and by their chunk second
+            int sum = 0;
+            boolean skip = false;
+            for (int d = 0; d < RADIX; d++) {
+                int start = sum;
+                for (int t = 0; t < p; t++) {
+                    int c = count[t][d];
+                    count[t][d] = sum;
+                    sum += c;
+                }
+                skip |= sum - start == n;
+            }
+            if (n == 0 || skip) {
+                continue;
+            }
+
+            Tasks.invokeAll(p, t -> {
+                for (int i = bounds[t]; i < bounds[t + 1]; i += w) {
+                    int pos = count[t][digit(format.key(src, i), finalDigit, format)]++ * w;
+                    copyRecord(src, i, dst, pos, w);
+                }
+            });
+
+            a = dst;
+            buf = src;
+        }
+
+        return a;
+    }
+
+    private static void copyRecord(int[] src, int from, int[] dst, int to, int w) {
+        // arraycopy doesn't pay off for single ints
+        if (w == 1) {
+            dst[to] = src[from];
+        } else {
+            System.arraycopy(src, from, dst, to, w);
+        }
+    }
+
+    /**
+     * @param key
+     * @param digit index of the byte, 0 is the least significant one
+     * @param format
+     * @return the byte of the key, with the sign bit flipped if it is the most significant byte
+     */
+    private static int digit(long key, int digit, RecordFormat format) {
+        int b = (int) (key >>> (8 * digit)) & (RADIX - 1);
+        return digit == format.getKeySize() - 1 ? b ^ (RADIX >>> 1) : b;
+    }
+
+    /**
+     * sorts the binary file of records using EM-MergeSort. In the initial round, the input is split into data runs of
+     * RAM size which are sorted in main memory. Afterwards, the runs are merged block by block, up to fan-in many at
+     * once, until only one run is left. The input and output file are swapped at the start of each round, so the
+     * content of the input file is overwritten.
+     * @param inFileName file to sort, used as scratch space
+     * @param outFileName file the sorted data is written to
+     * @param blockSizeMiB size of the blocks that are read and written at once, in MiB. It is rounded down to a
+     *                     multiple of the record size, so that records never span two blocks
+     * @return the number of merge rounds
+     * @throws IOException
+     */
+    public int emMergeSort(String inFileName, String outFileName, int blockSizeMiB) throws IOException {
+        int blockSize = blockSizeMiB * MIB_TO_B / format.getRecordSize() * format.getRecordSize();
+        int k = getFanIn(blockSize);
+        if (runFormation == RunFormation.REPLACEMENT_SELECTION) {
+            // fails before anything is written if the heap doesn't fit
+            getHeapSize(blockSize);
+        }
+
+        File in = new File(inFileName).getAbsoluteFile();
+        File out = new File(outFileName).getAbsoluteFile();
+        File result = out;
+        int rounds = 0;
+        if (checkpointing) {
+            String parameters = in + "," + out + "," + blockSize + "," + k + "," + format.getRecordSize() + ","
+                    + format.getKeySize() + "," + compressRuns;
+            File manifestFile = Manifest.forOutput(out);
+            manifest = Manifest.load(manifestFile, parameters, in, out);
+            if (manifest == null) {
+                manifest = new Manifest(manifestFile, parameters, in.length());
+            }
+        }
+        if (asyncIo) {
+            ioExecutor = Executors.newCachedThreadPool();
+        }
+        stats = new SortStats();
+        stats.start();
+
+        try {
+            List<Run> runs;
+            boolean compressed;
+            if (manifest != null && manifest.getRound() > 0) {
+                // continue after the last completed round, whose runs take the place of the output of createRuns
+                out = manifest.getSource();
+                in = out.equals(result) ? new File(inFileName).getAbsoluteFile() : result;
+                runs = manifest.getSourceRuns();
+                compressed = manifest.isSourceCompressed();
+                rounds = manifest.getRound() - 1;
+            } else {
+                SortPhaseEvent event = new SortPhaseEvent();
+                event.begin();
+                long start = System.nanoTime();
+                long inputLength = in.length();
+                runs = createRuns(in, out, blockSize);
+                compressed = compressRuns;
+                completeRound(out, runs, compressed);
+                finishPhase(event, start, 0, 0, inputLength, runs);
+            }
+            // compressed runs are merged once more even if only one is left, to decompress it
+            while (runs.size() > 1 || compressed) {
+                File tmp = in;
+                in = out;
+                out = tmp;
+                SortPhaseEvent event = new SortPhaseEvent();
+                event.begin();
+                long start = System.nanoTime();
+                int inputRuns = runs.size();
+                long inputLength = Manifest.end(runs);
+                if (blockIndex && runs.size() <= k) {
+                    indexKeys = new long[BlockIndex.blocks(records(runs) * format.getRecordSize(), blockSize)];
+                }
+                if (threads > 1 && runs.size() <= k && !compressed) {
+                    runs = parallelMergeRound(in, out, runs, blockSize);
+                } else {
+                    // the output of the last round is never compressed
+                    boolean compressOutput = compressRuns && runs.size() > k;
+                    runs = mergeRound(in, out, runs, k, blockSize, compressed, compressOutput);
+                    compressed = compressOutput;
+                }
+                rounds++;
+                completeRound(out, runs, compressed);
+                finishPhase(event, start, rounds, inputRuns, inputLength, runs);
+            }
+
+            if (!out.equals(result)) {
+                Files.move(out.toPath(), result.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (blockIndex) {
+                BlockIndex index = indexKeys != null
+                        ? new BlockIndex(format, blockSize, result.length(), indexKeys)
+                        : BlockIndex.build(result, format, blockSize);
+                index.save(BlockIndex.forFile(result));
+            }
+            if (manifest != null) {
+                manifest.delete();
+            }
+            if (chunkSorter != null) {
+                stats.setSteals(chunkSorter.getStealCount());
+            }
+            stats.finish();
+            if (listener != null) {
+                listener.sortFinished(stats);
+            }
+        } finally {
+            manifest = null;
+            indexKeys = null;
+            if (chunkSorter != null) {
+                chunkSorter.close();
+                chunkSorter = null;
+            }
+            if (ioExecutor != null) {
+                ioExecutor.shutdown();
+                ioExecutor = null;
+            }
+        }
+
+        return rounds;
+    }
+
+    /**
+     * @param blockSize in bytes
+     * @return the number of data runs that are merged at once for the given block size
+     */
+    private int getFanIn(int blockSize) {
+        // the buffers of each data run and of the output have to fit into main memory
+        int buffers = getBuffersPerStream(blockSize);
+        long maxFanIn = blockSize > 0 ? ramSize / ((long) buffers * blockSize) - 1 : 0;
+        if (maxFanIn < 2 || fanIn > maxFanIn) {
+            throw new IllegalArgumentException("RAM size has to be at least " + (Math.max(fanIn, 2) + 1) * buffers
+                    + " times the block size");
+        }
+        return fanIn == 0 ? (int) Math.min(maxFanIn, Integer.MAX_VALUE) : fanIn;
+    }
+
+    /**
+     * @param blockSize in bytes
+     * @return the number of ints of the heap of replacement selection, which holds whole records and at least one
+     * block
+     */
+    private int getHeapSize(int blockSize) {
+        // the blocks of records read and written and the buffers of the reader and the writer take the rest
+        long reserved = (2L + getBuffersPerStream(blockSize, false) + getBuffersPerStream(blockSize, compressRuns))
+                * blockSize;
+        if (blockSize <= 0 || ramSize - reserved < blockSize) {
+            throw new IllegalArgumentException("RAM size has to be at least " + (reserved / Math.max(1, blockSize) + 1)
+                    + " times the block size for replacement selection");
+        }
+        int w = format.getWidth();
+        return (int) Math.min((ramSize - reserved) / INT_BYTES / w * w, (Integer.MAX_VALUE - 8L) / w * w);
+    }
+
+    /**
+     * @param blockSize in bytes
+     * @return the number of blocks a single reader or writer of data runs keeps in main memory
+     */
+    private int getBuffersPerStream(int blockSize) {
+        return getBuffersPerStream(blockSize, compressRuns);
+    }
+
+    /**
+     * @param blockSize in bytes
+     * @param compressed whether the reader or writer works on compressed runs
+     * @return the number of blocks a single reader or writer keeps in main memory
+     */
+    private int getBuffersPerStream(int blockSize, boolean compressed) {
+        // the asynchronous wrappers add a pair of buffers to the one of the underlying reader or writer
+        int buffers = asyncIo ? 3 : 1;
+        if (compressed && blockSize > 0) {
+            // the reader or writer of compressed runs keeps an encoded block besides the decoded one, which is
+            // larger than a block in the worst case
+            long encoded = DeltaCodec.getMaxBlockSize(blockSize / format.getRecordSize(), format);
+            buffers += (int) ((encoded + blockSize - 1) / blockSize);
+        }
+        return buffers;
+    }
+
+    private RunReader openReader(File file, Run run, int blockSize) throws IOException {
+        return openReader(file, run, blockSize, false);
+    }
+
+    private RunReader openReader(File file, Run run, int blockSize, boolean compressed) throws IOException {
+        RunReader reader;
+        if (compressed) {
+            reader = new CompressedRunReader(file, run, blockSize, format, stats);
+        } else if (ioMode == IoMode.MAPPED) {
+            reader = new MappedRunReader(file, run, blockSize);
+        } else {
+            reader = new StreamRunReader(file, run, blockSize, stats);
+        }
+        reader = asyncIo ? new PrefetchRunReader(reader, blockSize, ioExecutor) : reader;
+        sampleBuffers();
+        return reader;
+    }
+
+    private RunWriter openWriter(File file, int blockSize, boolean compressed) throws IOException {
+        return openWriter(file, blockSize, compressed, 0);
+    }
+
+    /**
+     * @param file
+     * @param blockSize in bytes
+     * @param compressed
+     * @param position in bytes, the file is truncated there and the data before it is kept
+     * @return
+     * @throws IOException
+     */
+    private RunWriter openWriter(File file, int blockSize, boolean compressed, long position) throws IOException {
+        boolean append = position > 0;
+        if (append) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(position);
+            }
+        }
+        RunWriter writer;
+        if (compressed) {
+            writer = new CompressedRunWriter(new FileOutputStream(file, append), blockSize, format, position);
+        } else if (ioMode == IoMode.MAPPED) {
+            writer = append ? new ChannelRunWriter(file, position, blockSize) : new ChannelRunWriter(file, blockSize);
+        } else {
+            writer = new StreamRunWriter(new FileOutputStream(file, append), blockSize, position);
+        }
+        writer = asyncIo ? new WriteBehindRunWriter(writer, blockSize, ioExecutor) : writer;
+        sampleBuffers();
+        return writer;
+    }
+
+    /**
+     * records the direct and mapped buffers in the stats after one may have been allocated
+     */
+    private void sampleBuffers() {
+        if (stats != null) {
+            stats.sampleBuffers();
+        }
+    }
+
+    /**
+     * saves the progress of the current round if checkpointing is enabled
+     * @param writer is synced first, so the saved data runs are completely inside the file
+     * @param runs the data runs of the current round that are written so far
+     * @param position how far the input of the round has been consumed: in bytes during the run formation, in data
+     * runs during a merge round
+     * @throws IOException
+     */
+    private void checkpoint(RunWriter writer, List<Run> runs, long position) throws IOException {
+        if (manifest != null) {
+            writer.sync();
+            manifest.saveProgress(runs, position);
+        }
+    }
+
+    /**
+     * records a finished phase of emMergeSort in the stats and as a JFR event, and notifies the listener
+     * @param event begun at the start of the phase
+     * @param start nanoTime at the start of the phase
+     * @param round 0 for the run formation
+     * @param inputRuns number of data runs that were merged, 0 for the run formation
+     * @param bytesRead
+     * @param runs the data runs the phase has written
+     */
+    private void finishPhase(SortPhaseEvent event, long start, int round, int inputRuns, long bytesRead,
+                             List<Run> runs) {
+        SortStats.Phase phase = new SortStats.Phase(round, inputRuns, runs.size(), bytesRead, Manifest.end(runs),
+                System.nanoTime() - start);
+        stats.addPhase(phase);
+        event.end();
+        if (event.shouldCommit()) {
+            event.round = round;
+            event.inputRuns = inputRuns;
+            event.outputRuns = runs.size();
+            event.bytesRead = bytesRead;
+            event.bytesWritten = phase.getBytesWritten();
+            event.commit();
+        }
+        if (listener != null) {
+            listener.phaseFinished(phase, stats);
+        }
+    }
+
+    /**
+     * @param writer
+     * @param blockSize of the BlockIndex in bytes
+     * @param position where the writer starts inside the output file, in bytes
+     * @return a writer that collects the keys of the BlockIndex if the current round writes the output, else writer
+     */
+    private RunWriter indexed(RunWriter writer, int blockSize, long position) {
+        return indexKeys != null ? new IndexingRunWriter(writer, format, blockSize, position, indexKeys) : writer;
+    }
+
+    /**
+     * @param runs
+     * @return the total number of records in the data runs
+     */
+    private static long records(List<Run> runs) {
+        long records = 0;
+        for (Run run : runs) {
+            records += run.getRecords();
+        }
+        return records;
+    }
+
+    private void completeRound(File file, List<Run> runs, boolean compressed) throws IOException {
+        if (manifest != null) {
+            manifest.completeRound(file, runs, compressed);
+        }
+    }
+
+    /**
+     * @return the data runs of the current round that were written before emMergeSort was interrupted
+     */
+    private List<Run> getResumedRuns() {
+        return manifest != null ? new ArrayList<>(manifest.getWritten()) : new ArrayList<>();
+    }
+
+    /**
+     * @return how far the input of the current round was consumed before emMergeSort was interrupted
+     */
+    private long getResumedPosition() {
+        return manifest != null ? manifest.getPosition() : 0;
+    }
+
+    /**
+     * @param in
+     * @param position in bytes
+     * @return the remaining records of the input file, starting at the given position
+     */
+    private Run remainingFile(File in, long position) {
+        Run whole = wholeFile(in);
+        return new Run(position, whole.getLength() - position, whole.getRecords() - position / format.getRecordSize());
+    }
+
+    /**
+     * adds the data run that ends at the given position
+     * @param runs
+     * @param start of the run, in bytes
+     * @param end of the run, in bytes
+     * @param records number of records inside the run
+     * @return the end, which is where the next run starts
+     */
+    private static long addRun(List<Run> runs, long start, long end, long records) {
+        runs.add(new Run(start, end - start, records));
+        return end;
+    }
+
+    /**
+     * @param file
+     * @return the whole file as a single data run, ignoring trailing bytes that don't form a record
+     */
+    private Run wholeFile(File file) {
+        long records = file.length() / format.getRecordSize();
+        return new Run(0, records * format.getRecordSize(), records);
+    }
+
+    /**
+     * sorts the first n records of the chunk in main memory, using the given number of cores
+     * @param chunk
+     * @param n
+     * @param p
+     * @return the sorted array, which is either the chunk or the buffer of MergeSort
+     * @throws InterruptedException
+     */
+    private int[] sortChunk(int[] chunk, int n, int p) throws InterruptedException {
+        if (runFormation == RunFormation.RADIX_SORT) {
+            return p == 1 ? radixSort(chunk, n, format) : getChunkSorter(p).radixSort(chunk, n, format);
+        }
+        if (p == 1) {
+            return format.getWidth() == 1 ? mergeSort(chunk, n) : mergeSort(chunk, n, format);
+        }
+        return getChunkSorter(p).mergeSort(chunk, n, format);
+    }
+
+    /**
+     * @param p number of cores
+     * @return the sorter for the chunks, whose pool is kept for all chunks of the sort
+     */
+    private ParallelSorter getChunkSorter(int p) {
+        if (chunkSorter == null) {
+            chunkSorter = new ParallelSorter(p, stats);
+        }
+        return chunkSorter;
+    }
+
+    /**
+     * initial round of EM-MergeSort: creates sorted data runs using the configured run formation. The runs are
+     * compressed if compressRuns is set
+     * @param in
+     * @param out
+     * @param blockSize in bytes
+     * @return the data runs inside the output file
+     * @throws IOException
+     */
+    private List<Run> createRuns(File in, File out, int blockSize) throws IOException {
+        if (runFormation == RunFormation.REPLACEMENT_SELECTION) {
+            return replacementSelection(in, out, blockSize);
+        }
+        if (threads > 1) {
+            return parallelSortRuns(in, out, blockSize);
+        }
+        return sortRuns(in, out, blockSize);
+    }
+
+    /**
+     * reads in the input in chunks, sorts them and writes them to the output file. A chunk takes half of the RAM
+     * that the reader and the writer leave, as sorting it needs a buffer of the same size
+     * @param in
+     * @param out
+     * @param blockSize in bytes
+     * @return the data runs inside the output file
+     * @throws IOException
+     */
+    private List<Run> sortRuns(File in, File out, int blockSize) throws IOException {
+        // the chunk consists of whole blocks and therefore of whole records
+        long ioBlocks = getBuffersPerStream(blockSize, false) + getBuffersPerStream(blockSize, compressRuns);
+        int runBlocks = (int) Math.max(1, Math.min((ramSize / blockSize - ioBlocks) / 2,
+                (Integer.MAX_VALUE - 8L) / (blockSize / INT_BYTES)));
+        int[] chunk = new int[runBlocks * (blockSize / INT_BYTES)];
+        List<Run> runs = getResumedRuns();
+        long start = Manifest.end(runs);
+        long position = getResumedPosition();
+
+        try (RunReader reader = openReader(in, remainingFile(in, position), blockSize);
+             RunWriter writer = openWriter(out, blockSize, compressRuns, start)) {
+            int n;
+            while ((n = reader.read(chunk, 0, chunk.length)) > 0) {
+                int[] sorted;
+                try {
+                    sorted = sortChunk(chunk, n / format.getWidth(), 1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+                writer.write(sorted, 0, n);
+                start = addRun(runs, start, writer.endRun(), n / format.getWidth());
+                position += (long) n * INT_BYTES;
+                checkpoint(writer, runs, position);
+            }
+        }
+
+        return runs;
+    }
+
+    /**
+     * same as sortRuns, but sorts the chunks with parallel MergeSort in a three-stage pipeline: while chunk i is
+     * sorted, chunk i + 1 is read and chunk i - 1 is written in the background
+     * @param in
+     * @param out
+     * @param blockSize in bytes
+     * @return the data runs inside the output file
+     * @throws IOException
+     */
+    private List<Run> parallelSortRuns(File in, File out, int blockSize) throws IOException {
+        int chunkBlocks = (int) Math.max(1, Math.min(ramSize / 4 / blockSize,
+                (Integer.MAX_VALUE - 8L) / (blockSize / INT_BYTES)));
+        int[][] chunks = new int[3][chunkBlocks * (blockSize / INT_BYTES)];
+        List<Run> runs = getResumedRuns();
+        long start = Manifest.end(runs);
+        long position = getResumedPosition();
+        ExecutorService pipeline = Executors.newFixedThreadPool(2);
+
+        try (RunReader reader = openReader(in, remainingFile(in, position), blockSize);
+             RunWriter writer = openWriter(out, blockSize, compressRuns, start)) {
+            Future<Integer> read = pipeline.submit(() -> reader.read(chunks[0], 0, chunks[0].length));
+            // returns the end of the chunk that is written in the background
+            Future<Long> write = null;
+            int writtenRecords = 0;
+
+            for (int i = 0; ; i++) {
+                int n = Tasks.await(read);
+                if (n == 0) {
+                    break;
+                }
+                // the buffer of chunk i + 1 was last used by chunk i - 2, which has already been written
+                int[] next = chunks[(i + 1) % 3];
+                read = pipeline.submit(() -> reader.read(next, 0, next.length));
+
+                int[] sorted;
+                try {
+                    sorted = sortChunk(chunks[i % 3], n / format.getWidth(), threads);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+                // parallel MergeSort may return its buffer, which then takes the place of the chunk
+                chunks[i % 3] = sorted;
+
+                if (write != null) {
+                    start = addRun(runs, start, Tasks.await(write), writtenRecords);
+                    position += (long) writtenRecords * format.getRecordSize();
+                    checkpoint(writer, runs, position);
+                }
+                write = pipeline.submit(() -> {
+                    writer.write(sorted, 0, n);
+                    return writer.endRun();
+                });
+                writtenRecords = n / format.getWidth();
+            }
+
+            if (write != null) {
+                addRun(runs, start, Tasks.await(write), writtenRecords);
+                position += (long) writtenRecords * format.getRecordSize();
+                checkpoint(writer, runs, position);
+            }
+        } finally {
+            pipeline.shutdownNow();
+        }
+
+        return runs;
+    }
+
+    /**
+     * creates the data runs using replacement selection: the heap always holds the elements that can still be
+     * appended to the current run, elements that are smaller than the last output are stored behind the heap
+     * and form the next run once the heap is empty. The records are read and written a block at a time
+     * @param in
+     * @param out
+     * @param blockSize in bytes
+     * @return the data runs inside the output file
+     * @throws IOException
+     */
+    private List<Run> replacementSelection(File in, File out, int blockSize) throws IOException {
+        int w = format.getWidth();
+        int[] heap = new int[getHeapSize(blockSize)];
+        int[] record = new int[w];
+        int[] input = new int[blockSize / INT_BYTES];
+        int[] output = new int[blockSize / INT_BYTES];
+        int inputPos = 0;
+        int inputEnd = 0;
+        int outputPos = 0;
+        boolean exhausted = false;
+        List<Run> runs = new ArrayList<>();
+        long start = 0;
+
+        try (RunReader reader = openReader(in, wholeFile(in), blockSize);
+             RunWriter writer = openWriter(out, blockSize, compressRuns)) {
+            int total = reader.read(heap, 0, heap.length) / w;
+
+            while (total > 0) {
+                // heap[0..heapSize) is the heap of the current run, heap[heapSize..total) belongs to the next run
+                int heapSize = total;
+                heapify(heap, heapSize, format, record);
+                long records = 0;
+
+                while (heapSize > 0) {
+                    long min = format.key(heap, 0);
+                    copyRecord(heap, 0, output, outputPos, w);
+                    outputPos += w;
+                    if (outputPos == output.length) {
+                        writer.write(output, 0, outputPos);
+                        outputPos = 0;
+                    }
+                    records++;
+
+                    if (inputPos == inputEnd && !exhausted) {
+                        inputEnd = reader.read(input, 0, input.length);
+                        inputPos = 0;
+                        exhausted = inputEnd < input.length;
+                    }
+                    if (inputPos < inputEnd) {
+                        if (format.key(input, inputPos) >= min) {
+                            copyRecord(input, inputPos, heap, 0, w);
+                        } else {
+                            heapSize--;
+                            copyRecord(heap, heapSize * w, heap, 0, w);
+                            copyRecord(input, inputPos, heap, heapSize * w, w);
+                        }
+                        inputPos += w;
+                    } else {
+                        heapSize--;
+                        copyRecord(heap, heapSize * w, heap, 0, w);
+                        total--;
+                        copyRecord(heap, total * w, heap, heapSize * w, w);
+                    }
+                    siftDown(heap, 0, heapSize, format, record);
+                }
+
+                writer.write(output, 0, outputPos);
+                outputPos = 0;
+                start = addRun(runs, start, writer.endRun(), records);
+            }
+        }
+
+        return runs;
+    }
+
+    /**
+     * establishes the min-heap property for the records a[0..n)
+     * @param a
+     * @param n number of records
+     * @param format
+     * @param tmp space for one record
+     */
+    private static void heapify(int[] a, int n, RecordFormat format, int[] tmp) {
+        int arity = format.getWidth() == 1 ? INT_HEAP_ARITY : 2;
+        for (int i = (n - 2) / arity; i >= 0; i--) {
+            siftDown(a, i, n, format, tmp);
+        }
+    }
+
+    /**
+     * moves the record at index i down the min-heap a[0..n) until the keys of both of its children are greater or
+     * equal
+     * @param a
+     * @param i
+     * @param n number of records
+     * @param format
+     * @param tmp space for one record
+     */
+    private static void siftDown(int[] a, int i, int n, RecordFormat format, int[] tmp) {
+        int w = format.getWidth();
+        if (w == 1) {
+            siftDown(a, i, n);
+            return;
+        }
+        long key = format.key(a, i * w);
+        System.arraycopy(a, i * w, tmp, 0, w);
+        int child;
+        while ((child = 2 * i + 1) < n) {
+            long childKey = format.key(a, child * w);
+            if (child + 1 < n) {
+                long rightKey = format.key(a, (child + 1) * w);
+                if (rightKey < childKey) {
+                    child++;
+                    childKey = rightKey;
+                }
+            }
+            if (childKey >= key) {
+                break;
+            }
+            System.arraycopy(a, child * w, a, i * w, w);
+            i = child;
+        }
+        System.arraycopy(tmp, 0, a, i * w, w);
+    }
+
+    /**
+     * siftDown for records that consist of their int key only, which are compared and moved directly. Their heap has
+     * INT_HEAP_ARITY children per node, which lie next to each other in memory, so each level costs about one
+     * cache miss and there are far fewer levels than in a binary heap
+     * @param a
+     * @param i
+     * @param n number of elements
+     */
+    private static void siftDown(int[] a, int i, int n) {
+        int element = a[i];
+        int child;
+        while ((child = INT_HEAP_ARITY * i + 1) < n) {
+            int last = Math.min(child + INT_HEAP_ARITY, n);
+            int min = child;
+            for (int c = child + 1; c < last; c++) {
+                if (a[c] < a[min]) {
+                    min = c;
+                }
+            }
+            if (a[min] >= element) {
+                break;
+            }
+            a[i] = a[min];
+            i = min;
+        }
+        a[i] = element;
+    }
+
+    /**
+     * merges every k consecutive data runs of the input file into one run of the output file
+     * @param in
+     * @param out
+     * @param runs the data runs inside the input file
+     * @param k fan-in
+     * @param blockSize in bytes
+     * @param compressedInput whether the runs of the input file are compressed
+     * @param compressOutput whether the runs of the output file are compressed
+     * @return the data runs inside the output file
+     * @throws IOException
+     */
+    private List<Run> mergeRound(File in, File out, List<Run> runs, int k, int blockSize, boolean compressedInput,
+                                 boolean compressOutput) throws IOException {
+        List<Run> merged = getResumedRuns();
+        long start = Manifest.end(merged);
+
+        try (RunWriter writer = indexed(openWriter(out, blockSize, compressOutput, start), blockSize, start)) {
+            for (int i = (int) getResumedPosition(); i < runs.size(); i += k) {
+                List<RunReader> readers = new ArrayList<>(Math.min(k, runs.size() - i));
+                long records = 0;
+                try {
+                    for (Run run : runs.subList(i, Math.min(i + k, runs.size()))) {
+                        readers.add(openReader(in, run, blockSize, compressedInput));
+                        records += run.getRecords();
+                    }
+                    merge(readers, writer);
+                } finally {
+                    for (RunReader reader : readers) {
+                        reader.close();
+                    }
+                }
+                start = addRun(merged, start, writer.endRun(), records);
+                checkpoint(writer, merged, Math.min(i + k, runs.size()));
+            }
+        }
+
+        return merged;
+    }
+
+    /**
+     * merges all data runs of the input file into the output file with p cores. The key space is split into p ranges
+     * by splitters which are chosen from a sample of the runs. Each core merges the parts of the runs that belong to
+     * its range and writes them directly to their final position inside the output file
+     * @param in
+     * @param out
+     * @param runs the data runs inside the input file
+     * @param blockSize in bytes
+     * @return the single data run inside the output file
+     * @throws IOException
+     */
+    private List<Run> parallelMergeRound(File in, File out, List<Run> runs, int blockSize) throws IOException {
+        // the cores share the RAM, so each one only gets a part of the block size
+        int recordSize = format.getRecordSize();
+        int coreBlockSize = Math.max(recordSize, blockSize / threads / recordSize * recordSize);
+        long total = 0;
+        for (Run run : runs) {
+            total += run.getLength();
+        }
+
+        // bounds[r][j] is the index of the first element of run r that belongs to range j
+        long[][] bounds = new long[runs.size()][threads + 1];
+        try (FileChannel channel = FileChannel.open(in.toPath(), StandardOpenOption.READ)) {
+            long[] splitters = chooseSplitters(channel, runs, total / recordSize);
+            for (int r = 0; r < runs.size(); r++) {
+                bounds[r][threads] = runs.get(r).getLength() / recordSize;
+                for (int j = 1; j < threads; j++) {
+                    bounds[r][j] = lowerBound(channel, runs.get(r), splitters[j - 1]);
+                }
+            }
+        }
+        try (FileChannel channel = FileChannel.open(out.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE)) {
+            channel.truncate(total);
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>(threads);
+        long position = 0;
+        for (int j = 0; j < threads; j++) {
+            List<Run> parts = new ArrayList<>(runs.size());
+            long length = 0;
+            for (int r = 0; r < runs.size(); r++) {
+                long partLength = (bounds[r][j + 1] - bounds[r][j]) * recordSize;
+                parts.add(new Run(runs.get(r).getStart() + bounds[r][j] * recordSize, partLength,
+                        bounds[r][j + 1] - bounds[r][j]));
+                length += partLength;
+            }
+            long finalPosition = position;
+            tasks.add(() -> {
+                mergeParts(in, out, parts, finalPosition, coreBlockSize, blockSize);
+                return null;
+            });
+            position += length;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                Tasks.await(future);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<Run> merged = new ArrayList<>(1);
+        merged.add(new Run(0, total, total / recordSize));
+        return merged;
+    }
+
+    /**
+     * merges the given parts of data runs and writes the result to the output file, starting at position
+     * @param in
+     * @param out
+     * @param parts
+     * @param position in bytes
+     * @param blockSize in bytes
+     * @param indexBlockSize block size of the BlockIndex in bytes
+     * @throws IOException
+     */
+    private void mergeParts(File in, File out, List<Run> parts, long position, int blockSize, int indexBlockSize)
+            throws IOException {
+        RunWriter channelWriter = new ChannelRunWriter(out, position, blockSize);
+        sampleBuffers();
+        List<RunReader> readers = new ArrayList<>(parts.size());
+        try (RunWriter writer = indexed(asyncIo ? new WriteBehindRunWriter(channelWriter, blockSize, ioExecutor)
+                : channelWriter, indexBlockSize, position)) {
+            for (Run part : parts) {
+                readers.add(openReader(in, part, blockSize));
+            }
+            merge(readers, writer);
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * takes OVERSAMPLING * p evenly spaced samples from the data runs and chooses p - 1 splitters from them
+     * @param channel of the file containing the runs
+     * @param runs
+     * @param n total number of records in the runs
+     * @return the keys of the splitters in ascending order
+     * @throws IOException
+     */
+    private long[] chooseSplitters(FileChannel channel, List<Run> runs, long n) throws IOException {
+        long stride = Math.max(1, n / ((long) OVERSAMPLING * threads));
+        int recordSize = format.getRecordSize();
+        List<Long> samples = new ArrayList<>();
+        for (Run run : runs) {
+            for (long i = stride / 2; i < run.getLength() / recordSize; i += stride) {
+                samples.add(readKey(channel, run.getStart() + i * recordSize));
+            }
+        }
+        long[] sample = new long[samples.size()];
+        for (int i = 0; i < sample.length; i++) {
+            sample[i] = samples.get(i);
+        }
+        Arrays.sort(sample);
+
+        long[] splitters = new long[threads - 1];
+        for (int j = 1; j < threads; j++) {
+            splitters[j - 1] = sample.length == 0
+                    ? Long.MAX_VALUE
+                    : sample[(int) ((long) j * sample.length / threads)];
+        }
+        return splitters;
+    }
+
+    /**
+     * looks for the first record of the data run whose key is greater or equal to the given key, using binary
+     * search with positioned reads
+     * @param channel of the file containing the run
+     * @param run
+     * @param key
+     * @return the index of that record inside the run, or the number of records if there is none
+     * @throws IOException
+     */
+    private long lowerBound(FileChannel channel, Run run, long key) throws IOException {
+        int recordSize = format.getRecordSize();
+        long start = 0;
+        long end = run.getLength() / recordSize;
+        while (start < end) {
+            long i = (start + end) / 2;
+            if (readKey(channel, run.getStart() + i * recordSize) < key) {
+                start = i + 1;
+            } else {
+                end = i;
+            }
+        }
+        return start;
+    }
+
+    private long readKey(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(format.getKeySize());
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("position " + position + " is behind the end of the file");
+            }
+        }
+        return format.key(buffer, 0);
+    }
+
+    /**
+     * merges the given data runs in a single pass, using a loser tree to find the record with the smallest key
+     * @param readers
+     * @param writer
+     * @throws IOException
+     */
+    private void merge(List<RunReader> readers, RunWriter writer) throws IOException {
+        int w = format.getWidth();
+        LoserTree tree = new LoserTree(readers.size());
+        for (int i = 0; i < readers.size(); i++) {
+            if (readers.get(i).hasNext()) {
+                tree.set(i, format.key(readers.get(i)));
+            } else {
+                tree.setExhausted(i);
+            }
+        }
+        tree.build();
+
+        while (!tree.isEmpty()) {
+            RunReader reader = readers.get(tree.winner());
+            for (int i = 0; i < w; i++) {
+                writer.write(reader.next());
+            }
+            if (reader.hasNext()) {
+                tree.replaceWinner(format.key(reader));
+            } else {
+                tree.removeWinner();
+            }
+        }
+    }
+
+    /**
+     * sorts the binary file of ints in main memory with the standard library, so the result of EM-MergeSort can be
+     * compared against it
+     * @param inFileName
+     * @param outFileName
+     * @throws IOException
+     */
+    public static void sortFileComp(String inFileName, String outFileName) throws IOException {
+        int[] a = readIntFile(inFileName);
+        Arrays.sort(a);
+        writeIntFile(outFileName, a);
+    }
+
+    /**
+     * sorts the binary file of records in main memory with classical MergeSort, so the result of EM-MergeSort can
+     * be compared against it
+     * @param inFileName
+     * @param outFileName
+     * @param format
+     * @throws IOException
+     */
+    public static void sortFileComp(String inFileName, String outFileName, RecordFormat format) throws IOException {
+        int[] a = readIntFile(inFileName);
+        int n = a.length / format.getWidth();
+        writeIntFile(outFileName, Arrays.copyOf(mergeSort(a, n, format), n * format.getWidth()));
+    }
+
+    /**
+     * sorts the binary file of ints in main memory using classical MergeSort
+     * @param inFileName
+     * @param outFileName
+     * @throws IOException
+     */
+    public static void mergeSortOnFile(String inFileName, String outFileName) throws IOException {
+        writeIntFile(outFileName, mergeSort(readIntFile(inFileName)));
+    }
+
+    /**
+     * creates a file of random ints
+     * @param fileName
+     * @param fileSizeMiB size of the file in MiB
+     * @param ramSizeMiB size of the chunks that are generated at once, in MiB
+     * @throws IOException
+     */
+    public static void createRandomFile(String fileName, int fileSizeMiB, int ramSizeMiB) throws IOException {
+        Random rand = new Random();
+        byte[] chunk = new byte[ramSizeMiB * MIB_TO_B];
+        long remaining = (long) fileSizeMiB * MIB_TO_B;
+
+        try (OutputStream out = new FileOutputStream(fileName)) {
+            while (remaining > 0) {
+                int length = (int) Math.min(chunk.length, remaining);
+                rand.nextBytes(chunk);
+                out.write(chunk, 0, length);
+                remaining -= length;
+            }
+        }
+    }
+
+    private static int[] readIntFile(String fileName) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(new File(fileName).toPath()));
+        int[] a = new int[buffer.remaining() / INT_BYTES];
+        buffer.asIntBuffer().get(a);
+        return a;
+    }
+
+    private static void writeIntFile(String fileName, int[] a) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(a.length * INT_BYTES);
+        buffer.asIntBuffer().put(a);
+        Files.write(new File(fileName).toPath(), buffer.array());
+    }
 }
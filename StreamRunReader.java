@@ -0,0 +1,100 @@
+package main;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * reads a data run through a LimitedStream, converting every block to ints with a ByteBuffer
+ */
+public class StreamRunReader implements RunReader {
+    private final LimitedStream stream;
+    private final byte[] block;
+    private final IntBuffer buffer;
+    private int size = 0;
+    private int pos = 0;
+
+    /**
+     * @param file
+     * @param run
+     * @param blockSize in bytes
+     * @throws IOException
+     */
+    public StreamRunReader(File file, Run run, int blockSize) throws IOException {
+        this(file, run, blockSize, null);
+    }
+
+    /**
+     * @param file
+     * @param run
+     * @param blockSize in bytes
+     * @param stats receives the latency of the block reads, may be null
+     * @throws IOException
+     */
+    public StreamRunReader(File file, Run run, int blockSize, SortStats stats) throws IOException {
+        stream = new LimitedStream(new FileInputStream(file));
+        stream.setStats(stats);
+        stream.initialize((int) ((run.getLength() + blockSize - 1) / blockSize), blockSize, run.getLength());
+        // runs created by replacement selection don't have to start at a block boundary
+        if (!stream.skipNBlocks(run.getStart() / blockSize)) {
+            stream.close();
+            throw new EOFException("data run starts behind the end of the file");
+        }
+        stream.skipNBytes(run.getStart() % blockSize);
+        block = new byte[blockSize];
+        buffer = ByteBuffer.wrap(block).asIntBuffer();
+        readBlock();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return pos < size;
+    }
+
+    @Override
+    public int peek() {
+        return buffer.get(pos);
+    }
+
+    @Override
+    public int peek(int offset) {
+        return buffer.get(pos + offset);
+    }
+
+    @Override
+    public int next() throws IOException {
+        int element = buffer.get(pos);
+        if (++pos == size) {
+            readBlock();
+        }
+        return element;
+    }
+
+    @Override
+    public int read(int[] a, int from, int n) throws IOException {
+        int read = 0;
+        while (read < n && hasNext()) {
+            int length = Math.min(n - read, size - pos);
+            buffer.get(pos, a, from + read, length);
+            read += length;
+            pos += length;
+            if (pos == size) {
+                readBlock();
+            }
+        }
+        return read;
+    }
+
+    private void readBlock() throws IOException {
+        size = stream.readBlock(block) ? stream.getLastBlockLength() / Integer.BYTES : 0;
+        pos = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        stream.close();
+    }
+}
@@ -0,0 +1,83 @@
+package main;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * writes a data run to an OutputStream, converting every block to bytes with a ByteBuffer
+ */
+public class StreamRunWriter implements RunWriter {
+    private final OutputStream out;
+    private final byte[] block;
+    private final IntBuffer buffer;
+    private int pos = 0;
+    // position of the stream inside the file, in bytes
+    private long position;
+
+    /**
+     * @param out
+     * @param blockSize in bytes
+     */
+    public StreamRunWriter(OutputStream out, int blockSize) {
+        this(out, blockSize, 0);
+    }
+
+    /**
+     * @param out
+     * @param blockSize in bytes
+     * @param position of the stream inside the file, in bytes, if it appends to existing data
+     */
+    public StreamRunWriter(OutputStream out, int blockSize, long position) {
+        this.out = out;
+        this.position = position;
+        block = new byte[blockSize];
+        buffer = ByteBuffer.wrap(block).asIntBuffer();
+    }
+
+    @Override
+    public void write(int element) throws IOException {
+        buffer.put(pos++, element);
+        if (pos == buffer.capacity()) {
+            flush();
+        }
+    }
+
+    @Override
+    public void write(int[] a, int from, int n) throws IOException {
+        while (n > 0) {
+            int length = Math.min(n, buffer.capacity() - pos);
+            buffer.put(pos, a, from, length);
+            pos += length;
+            from += length;
+            n -= length;
+            if (pos == buffer.capacity()) {
+                flush();
+            }
+        }
+    }
+
+    @Override
+    public long endRun() {
+        return position + (long) pos * Integer.BYTES;
+    }
+
+    @Override
+    public void sync() throws IOException {
+        flush();
+        out.flush();
+    }
+
+    private void flush() throws IOException {
+        out.write(block, 0, pos * Integer.BYTES);
+        position += pos * Integer.BYTES;
+        pos = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        out.close();
+    }
+}
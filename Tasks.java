@@ -0,0 +1,79 @@
+package main;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+/**
+ * helpers for work that is run by other threads: waiting for futures and running loops as tasks of a ForkJoinPool
+ */
+public class Tasks {
+    /**
+     * receives a range [from, to) of indices
+     */
+    interface RangeConsumer {
+        void accept(long from, long to);
+    }
+
+    /**
+     * @param future
+     * @return the result of the background task, rethrowing its IOException
+     * @throws IOException
+     */
+    static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * runs body(0), ..., body(n - 1) in parallel. Has to be called from a task of a ForkJoinPool
+     * @param n
+     * @param body
+     */
+    static void invokeAll(int n, IntConsumer body) {
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[n];
+        for (int i = 0; i < n; i++) {
+            int finalI = i;
+            tasks[i] = ForkJoinTask.adapt(() -> body.accept(finalI));
+        }
+        ForkJoinTask.invokeAll(tasks);
+    }
+
+    /**
+     * runs body(0), ..., body(n - 1), in parallel if p > 1
+     * @param n
+     * @param p number of cores, with more than one this has to be called from a task of a ForkJoinPool
+     * @param body
+     */
+    static void forEach(int n, int p, IntConsumer body) {
+        if (p == 1) {
+            for (int i = 0; i < n; i++) {
+                body.accept(i);
+            }
+        } else {
+            invokeAll(n, body);
+        }
+    }
+
+    /**
+     * splits 0..n into p ranges of about the same size and runs body on each of them, in parallel if p > 1
+     * @param n
+     * @param p number of cores, with more than one this has to be called from a task of a ForkJoinPool
+     * @param body
+     */
+    static void forEachRange(long n, int p, RangeConsumer body) {
+        forEach(p, p, t -> body.accept(t * n / p, (t + 1) * n / p));
+    }
+}
@@ -2,9 +2,13 @@ package main;
 
 import java.io.*;
 import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 
 public class Tester {
@@ -19,16 +23,32 @@ public class Tester {
         int blockSizeMiB = 32;
         int ramSizeMiB = 4 * blockSizeMiB;
         int fileSize = ramSizeMiB * 10;
+        // STREAM or MAPPED, used for sorting as well as for checking the result
+        Sorter.IoMode ioMode = Sorter.IoMode.STREAM;
 
         Sorter.createRandomFile(origFile, fileSize, ramSizeMiB);
         Files.copy(Paths.get(origFile), Paths.get(tmpFile), StandardCopyOption.REPLACE_EXISTING);
 
         Sorter.sortFileComp(origFile, compFile);
-        testEM(tmpFile, outFile, blockSizeMiB, ramSizeMiB);
+        testEM(tmpFile, outFile, blockSizeMiB, ramSizeMiB, ioMode);
 
+        if (ioMode == Sorter.IoMode.MAPPED) {
+            System.out.println("Is sorted: " + isSortedMapped(outFile, ramSizeMiB));
+            System.out.println("Files are the same: " + compareFilesMapped(new File(compFile), new File(outFile), 512));
+        } else {
+            System.out.println("Is sorted: " + isSorted(outFile, ramSizeMiB));
+            System.out.println("Files are the same: " + compareFiles(new File(compFile), new File(outFile), 512));
+        }
+
+        // checks every element in parallel and matches the output to the input without a reference copy
+        int p = Runtime.getRuntime().availableProcessors();
+        Verifier.Result input = Verifier.verify(new File(origFile), RecordFormat.INT, p);
+        Verifier.Result output = Verifier.verify(new File(outFile), RecordFormat.INT, p);
+        System.out.println("Output: " + output);
+        System.out.println("Sorted permutation of the input: " + output.isSortedPermutationOf(input));
 
-        System.out.println("Is sorted: " + isSorted(outFile, ramSizeMiB));
-        System.out.println("Files are the same: " + compareFiles(new File(compFile), new File(outFile), 512));
+        System.out.println("Replacement selection at the smallest RAM size: "
+                + testReplacementSelection(origFile, tmpFile, outFile));
     }
 
     public static boolean compareFiles(File file1, File file2, int ramSizeMiB) throws IOException {
@@ -57,9 +77,15 @@ public class Tester {
 
     public static long testEM(String inFileName, String outFileName, int blockSizeMiB, int ramSizeMiB)
             throws IOException {
+        return testEM(inFileName, outFileName, blockSizeMiB, ramSizeMiB, Sorter.IoMode.STREAM);
+    }
+
+    public static long testEM(String inFileName, String outFileName, int blockSizeMiB, int ramSizeMiB,
+                              Sorter.IoMode ioMode) throws IOException {
         long startTime = System.currentTimeMillis();
 
         Sorter sorter = new Sorter(ramSizeMiB);
+        sorter.setIoMode(ioMode);
         int rounds = sorter.emMergeSort(inFileName, outFileName, blockSizeMiB);
 
         long endTime = System.currentTimeMillis();
@@ -69,10 +95,45 @@ public class Tester {
         int minutes = (int) (diff / 60000);
         System.out.printf("EM-MergeSort: %d'%03d.%03d\n", minutes, seconds, millis);
         System.out.println("rounds: " + rounds);
+        System.out.println(sorter.getStats());
 
         return diff;
     }
 
+    /**
+     * sorts the file with replacement selection at the smallest RAM size it accepts with the default settings, 5
+     * times the block size, after checking that 4 times the block size is rejected
+     * @param origFile is only read
+     * @param tmpFile receives a copy of origFile, which is used as scratch space
+     * @param outFile
+     * @return whether the output is a sorted permutation of origFile
+     * @throws IOException
+     */
+    public static boolean testReplacementSelection(String origFile, String tmpFile, String outFile)
+            throws IOException {
+        int blockSizeMiB = 1;
+        Sorter sorter = new Sorter(4 * blockSizeMiB);
+        sorter.setRunFormation(Sorter.RunFormation.REPLACEMENT_SELECTION);
+        try {
+            sorter.emMergeSort(origFile, outFile, blockSizeMiB);
+            return false;
+        } catch (IllegalArgumentException e) {
+            // expected, the heap wouldn't hold a single block
+        }
+
+        Files.copy(Paths.get(origFile), Paths.get(tmpFile), StandardCopyOption.REPLACE_EXISTING);
+        sorter = new Sorter(5 * blockSizeMiB);
+        sorter.setRunFormation(Sorter.RunFormation.REPLACEMENT_SELECTION);
+        int rounds = sorter.emMergeSort(tmpFile, outFile, blockSizeMiB);
+        System.out.println("rounds: " + rounds);
+        System.out.println(sorter.getStats());
+
+        int p = Runtime.getRuntime().availableProcessors();
+        Verifier.Result input = Verifier.verify(new File(origFile), RecordFormat.INT, p);
+        Verifier.Result output = Verifier.verify(new File(outFile), RecordFormat.INT, p);
+        return output.isSortedPermutationOf(input);
+    }
+
     public static long testClassical(String inFileName, String outFileName) throws IOException {
         long startTime = System.currentTimeMillis();
 
@@ -97,22 +158,110 @@ public class Tester {
         int current;
 
         byte[] byteArray;
-        ByteBuffer buffer;
         int M = ramSizeMiB * Sorter.MIB_TO_B;
 
         while ((byteArray = in.readNBytes(M)).length > 0) {
-            buffer = ByteBuffer.wrap(byteArray);
-            current = buffer.asIntBuffer().get();
+            IntBuffer ints = ByteBuffer.wrap(byteArray).asIntBuffer();
+            while (ints.hasRemaining()) {
+                current = ints.get();
 
-            if (current < last) {
-                in.close();
-                return false;
-            }
+                if (current < last) {
+                    in.close();
+                    return false;
+                }
 
-            last = current;
+                last = current;
+            }
         }
 
         in.close();
         return true;
     }
+
+    /**
+     * same as compareFiles, but maps both files chunk by chunk instead of copying them into byte arrays
+     * @param file1
+     * @param file2
+     * @param ramSizeMiB
+     * @return whether both files have the same content
+     * @throws IOException
+     */
+    public static boolean compareFilesMapped(File file1, File file2, int ramSizeMiB) throws IOException {
+        if (file1.length() != file2.length()) {
+            return false;
+        }
+
+        try (FileChannel in1 = FileChannel.open(file1.toPath(), StandardOpenOption.READ);
+             FileChannel in2 = FileChannel.open(file2.toPath(), StandardOpenOption.READ)) {
+            long M = (long) ramSizeMiB / 2 * Sorter.MIB_TO_B;
+            for (long pos = 0; pos < file1.length(); pos += M) {
+                long length = Math.min(M, file1.length() - pos);
+                MappedByteBuffer chunk1 = in1.map(FileChannel.MapMode.READ_ONLY, pos, length);
+                MappedByteBuffer chunk2 = in2.map(FileChannel.MapMode.READ_ONLY, pos, length);
+                if (!chunk1.equals(chunk2)) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * checks the keys of every pair of neighbouring records of the file, mapping it chunk by chunk
+     * @param fileName
+     * @param ramSizeMiB
+     * @param format
+     * @return whether the file is sorted
+     * @throws IOException
+     */
+    public static boolean isSortedMapped(String fileName, int ramSizeMiB, RecordFormat format) throws IOException {
+        try (FileChannel in = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            int recordSize = format.getRecordSize();
+            long size = in.size() / recordSize * recordSize;
+            long M = (long) ramSizeMiB * Sorter.MIB_TO_B / recordSize * recordSize;
+            long last = Long.MIN_VALUE;
+
+            for (long pos = 0; pos < size; pos += M) {
+                MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(M, size - pos));
+                for (int i = 0; i < buffer.capacity(); i += recordSize) {
+                    long current = format.key(buffer, i);
+                    if (current < last) {
+                        return false;
+                    }
+                    last = current;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * checks every pair of neighbouring ints of the file, mapping it chunk by chunk as an IntBuffer
+     * @param fileName
+     * @param ramSizeMiB
+     * @return whether the file is sorted
+     * @throws IOException
+     */
+    public static boolean isSortedMapped(String fileName, int ramSizeMiB) throws IOException {
+        try (FileChannel in = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            long size = in.size() / Integer.BYTES * Integer.BYTES;
+            long M = (long) ramSizeMiB * Sorter.MIB_TO_B;
+            int last = Integer.MIN_VALUE;
+
+            for (long pos = 0; pos < size; pos += M) {
+                IntBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(M, size - pos)).asIntBuffer();
+                for (int i = 0; i < buffer.capacity(); i++) {
+                    int current = buffer.get(i);
+                    if (current < last) {
+                        return false;
+                    }
+                    last = current;
+                }
+            }
+        }
+
+        return true;
+    }
 }
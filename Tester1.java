@@ -1,105 +1,53 @@
 package main;
 
+import java.util.List;
 import java.util.Random;
-import java.util.concurrent.ExecutionException;
 
 public class Tester1 {
     private static final int n = 100;
     private static final int maxP = 6;
     private static final int avgExp = 6;
 
-    public static void main(String[] args) throws ExecutionException, InterruptedException {
+    public static void main(String[] args) throws Exception {
         parallelMergeSort();
         parallelMergeSortMoreP();
         parallelQuickSort();
         parallelQuickSortMoreP();
     }
 
-    public static void parallelMergeSort() throws InterruptedException {
-        long start, end;
-        int sum;
-
-        System.out.println("Parallel MergeSort: Average running time");
-        for (int p = 1; p <= maxP; p++) {
-            sum = 0;
-            for (int i = 0; i < n; i++) {
-                int[] a = getDistinctRandomArray((int) Math.pow(10, avgExp));
-
-                start = System.currentTimeMillis();
-                a = Sorter.parallelMergeSort(a, p);
-                end = System.currentTimeMillis();
-                sum += end - start;
-
-                assert (isSorted(a));
-            }
-            System.out.println(p + ": " + ((double) sum / n));
-        }
-        System.out.println();
+    public static void parallelMergeSort() throws Exception {
+        averageRunningTime("Parallel MergeSort", Benchmark.Algorithm.PARALLEL_MERGE_SORT);
     }
 
-    public static void parallelMergeSortMoreP() throws InterruptedException {
-        long start, end;
-        int sum;
-
-        System.out.println("Parallel MergeSort (more P): Average running time");
-        for (int p = 1; p <= maxP; p++) {
-            sum = 0;
-            for (int i = 0; i < n; i++) {
-                int[] a = getDistinctRandomArray((int) Math.pow(10, avgExp));
-
-                start = System.currentTimeMillis();
-                a = Sorter.parallelMergeSort(a, p, true);
-                end = System.currentTimeMillis();
-                sum += end - start;
-
-                assert (isSorted(a));
-            }
-            System.out.println(p + ": " + ((double) sum / n));
-        }
-        System.out.println();
+    public static void parallelMergeSortMoreP() throws Exception {
+        averageRunningTime("Parallel MergeSort (more P)", Benchmark.Algorithm.PARALLEL_MERGE_SORT_MORE_P);
     }
 
-    public static void parallelQuickSort() throws InterruptedException, ExecutionException {
-        long start, end;
-        int sum;
-
-        System.out.println("Parallel QuickSort: Average running time");
-        for (int p = 1; p <= maxP; p++) {
-            sum = 0;
-            for (int i = 0; i < n; i++) {
-                int[] a = getDistinctRandomArray((int) Math.pow(10, avgExp));
-
-                start = System.currentTimeMillis();
-                a = Sorter.parallelQuickSort(a, p);
-                end = System.currentTimeMillis();
-                sum += end - start;
-
-                assert (isSorted(a));
-            }
-            System.out.println(p + ": " + ((double) sum / n));
-        }
-        System.out.println();
+    public static void parallelQuickSort() throws Exception {
+        averageRunningTime("Parallel QuickSort", Benchmark.Algorithm.PARALLEL_QUICK_SORT);
     }
 
-    public static void parallelQuickSortMoreP() throws InterruptedException, ExecutionException {
-        long start, end;
-        int sum;
+    public static void parallelQuickSortMoreP() throws Exception {
+        averageRunningTime("Parallel QuickSort (more P)", Benchmark.Algorithm.PARALLEL_QUICK_SORT_MORE_P);
+    }
 
-        System.out.println("Parallel QuickSort (more P): Average running time");
+    /**
+     * measures the algorithm on a random permutation of 10^avgExp elements with 1 to maxP cores, see Benchmark
+     * @param title
+     * @param algorithm
+     * @throws Exception
+     */
+    private static void averageRunningTime(String title, Benchmark.Algorithm algorithm) throws Exception {
+        int[] threads = new int[maxP];
         for (int p = 1; p <= maxP; p++) {
-            sum = 0;
-            for (int i = 0; i < n; i++) {
-                int[] a = getDistinctRandomArray((int) Math.pow(10, avgExp));
-
-                start = System.currentTimeMillis();
-                a = Sorter.parallelQuickSort(a, p, true);
-                end = System.currentTimeMillis();
-                sum += end - start;
-
-                assert (isSorted(a));
-            }
-            System.out.println(p + ": " + ((double) sum / n));
+            threads[p - 1] = p;
         }
+        Benchmark benchmark = new Benchmark();
+        benchmark.setIterations(n);
+
+        System.out.println(title + ": Average running time");
+        benchmark.inMemory(List.of(algorithm), new int[] {(int) Math.pow(10, avgExp)},
+                List.of(Benchmark.Distribution.RANDOM), threads);
         System.out.println();
     }
 
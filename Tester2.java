@@ -1,52 +1,36 @@
 package main;
 
 import java.util.*;
-import java.util.concurrent.ExecutionException;
 
 public class Tester2 {
     // executes Experiment 2
-    public static void main(String[] args) throws InterruptedException, ExecutionException {
+    public static void main(String[] args) throws Exception {
         experiment2();
     }
 
-    public static void experiment2() throws ExecutionException, InterruptedException {
-        long start, end;
-        int[] a;
+    /**
+     * compares the sequential and parallel sorts with maxP cores on random permutations of 10^3 to 10^9 elements,
+     * see Benchmark. The large sizes are only measured once
+     * @throws Exception
+     */
+    public static void experiment2() throws Exception {
         int maxP = 6;
+        Benchmark benchmark = new Benchmark();
 
         for (int i = 3; i <= 9; i++) {
             System.out.println("10^" + i);
+            benchmark.setWarmup(i <= 7 ? 3 : 0);
+            benchmark.setIterations(i <= 7 ? 5 : 1);
 
-            a = getDistinctRandomArray((int) Math.pow(10, i));
-            start = System.currentTimeMillis();
-            a = Sorter.mergeSort(a);
-            end = System.currentTimeMillis();
-            assert isSorted(a);
-            System.out.println("MergeSort: " + (end - start));
-
+            List<Benchmark.Algorithm> algorithms = new ArrayList<>(List.of(Benchmark.Algorithm.MERGE_SORT,
+                    Benchmark.Algorithm.PARALLEL_MERGE_SORT, Benchmark.Algorithm.QUICK_SORT,
+                    Benchmark.Algorithm.PARALLEL_QUICK_SORT_MORE_P));
             // for i == 9, parallel Mergesort runs out of memory
-            if (i < 9) {
-                a = getDistinctRandomArray((int) Math.pow(10, i));
-                start = System.currentTimeMillis();
-                a = Sorter.parallelMergeSort(a, maxP);
-                end = System.currentTimeMillis();
-                assert isSorted(a);
-                System.out.println("Parallel MergeSort: " + (end - start));
+            if (i == 9) {
+                algorithms.remove(Benchmark.Algorithm.PARALLEL_MERGE_SORT);
             }
-
-            a = getDistinctRandomArray((int) Math.pow(10, i));
-            start = System.currentTimeMillis();
-            a = Sorter.quickSort(a);
-            end = System.currentTimeMillis();
-            assert isSorted(a);
-            System.out.println("QuickSort: " + (end - start));
-
-            a = getDistinctRandomArray((int) Math.pow(10, i));
-            start = System.currentTimeMillis();
-            a = Sorter.parallelQuickSort(a, maxP, true);
-            end = System.currentTimeMillis();
-            assert isSorted(a);
-            System.out.println("Parallel QuickSort: " + (end - start));
+            benchmark.inMemory(algorithms, new int[] {(int) Math.pow(10, i)}, List.of(Benchmark.Distribution.RANDOM),
+                    new int[] {maxP});
 
             System.out.println();
         }
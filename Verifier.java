@@ -0,0 +1,220 @@
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * verifies the output of a sort without sorting a reference copy. The file is split into segments which are
+ * memory-mapped and checked in parallel: every record is compared to its predecessor, also across the boundaries of
+ * the segments, and every record is hashed into a checksum of the multiset of records. The checksum is the sum of the
+ * hashes, so it doesn't depend on the order, and taking it of the input before the sort and comparing it to the one
+ * of the output shows whether the sort has lost, duplicated or changed any record
+ */
+public class Verifier {
+    // segments are at most this large, so they can be mapped and there are enough of them to share among the cores
+    private static final long MAX_SEGMENT_SIZE = 64L * Sorter.MIB_TO_B;
+
+    /**
+     * the outcome of checking a file
+     */
+    public static class Result {
+        private final long records;
+        private final long checksum;
+        // index of the first record whose key is smaller than the one of its predecessor, -1 if there is none
+        private final long firstUnsorted;
+
+        Result(long records, long checksum, long firstUnsorted) {
+            this.records = records;
+            this.checksum = checksum;
+            this.firstUnsorted = firstUnsorted;
+        }
+
+        public long getRecords() {
+            return records;
+        }
+
+        /**
+         * @return the checksum of the multiset of records, equal for files with the same records in any order
+         */
+        public long getChecksum() {
+            return checksum;
+        }
+
+        public boolean isSorted() {
+            return firstUnsorted < 0;
+        }
+
+        /**
+         * @return the index of the first record that is smaller than its predecessor, -1 if the file is sorted
+         */
+        public long getFirstUnsorted() {
+            return firstUnsorted;
+        }
+
+        /**
+         * @param input the result of the input file
+         * @return whether this is the result of a correct sort of the input
+         */
+        public boolean isSortedPermutationOf(Result input) {
+            return isSorted() && records == input.records && checksum == input.checksum;
+        }
+
+        @Override
+        public String toString() {
+            return records + " records, checksum " + Long.toHexString(checksum)
+                    + (isSorted() ? ", sorted" : ", unsorted at record " + firstUnsorted);
+        }
+    }
+
+    /**
+     * checks the order of the records and computes their checksum with p threads
+     * @param file
+     * @param format
+     * @param p number of threads
+     * @return the result
+     * @throws IOException
+     */
+    public static Result verify(File file, RecordFormat format, int p) throws IOException {
+        if (p < 1) {
+            throw new IllegalArgumentException("at least one core is needed");
+        }
+        int recordSize = format.getRecordSize();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long records = channel.size() / recordSize;
+            long segmentRecords = Math.max(1, Math.min(MAX_SEGMENT_SIZE / recordSize,
+                    (records + 4L * p - 1) / (4L * p)));
+            int segments = (int) ((records + segmentRecords - 1) / segmentRecords);
+
+            List<Callable<Result>> tasks = new ArrayList<>(segments);
+            for (int s = 0; s < segments; s++) {
+                long from = s * segmentRecords;
+                long to = Math.min(records, from + segmentRecords);
+                tasks.add(() -> verifySegment(channel, format, from, to));
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(p);
+            long checksum = 0;
+            long firstUnsorted = -1;
+            try {
+                for (Future<Result> future : executor.invokeAll(tasks)) {
+                    Result segment = Tasks.await(future);
+                    checksum += segment.checksum;
+                    if (firstUnsorted < 0) {
+                        firstUnsorted = segment.firstUnsorted;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } finally {
+                executor.shutdownNow();
+            }
+            return new Result(records, checksum, firstUnsorted);
+        }
+    }
+
+    /**
+     * @param channel
+     * @param format
+     * @param from index of the first record of the segment
+     * @param to index of the record after the segment
+     * @return the result of the segment, whose first record is compared to the last one of the previous segment
+     * @throws IOException
+     */
+    private static Result verifySegment(FileChannel channel, RecordFormat format, long from, long to)
+            throws IOException {
+        int recordSize = format.getRecordSize();
+        // the segment is mapped together with the record before it
+        long start = Math.max(0, from - 1);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start * recordSize,
+                (to - start) * recordSize);
+        long checksum = 0;
+        long firstUnsorted = -1;
+        long last = from > 0 ? format.key(buffer, 0) : Long.MIN_VALUE;
+        for (int i = (int) ((from - start) * recordSize); i < buffer.capacity(); i += recordSize) {
+            long key = format.key(buffer, i);
+            if (key < last && firstUnsorted < 0) {
+                firstUnsorted = start + i / recordSize;
+            }
+            last = key;
+            checksum += hash(buffer, i, recordSize);
+        }
+        return new Result(to - from, checksum, firstUnsorted);
+    }
+
+    /**
+     * @param buffer
+     * @param index of the first byte of the record
+     * @param recordSize
+     * @return a 64 bit hash of the bytes of the record
+     */
+    private static long hash(MappedByteBuffer buffer, int index, int recordSize) {
+        long h = 0x9e3779b97f4a7c15L;
+        for (int j = 0; j < recordSize; j += Integer.BYTES) {
+            h = mix(h + buffer.getInt(index + j));
+        }
+        return h;
+    }
+
+    /**
+     * the finalizer of SplitMix64, which spreads every bit of the input over the whole output
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * compares two files byte by byte, with p threads that compare mapped segments of both
+     * @param file1
+     * @param file2
+     * @param p number of threads
+     * @return whether both files have the same content
+     * @throws IOException
+     */
+    public static boolean sameContent(File file1, File file2, int p) throws IOException {
+        if (p < 1) {
+            throw new IllegalArgumentException("at least one core is needed");
+        }
+        try (FileChannel in1 = FileChannel.open(file1.toPath(), StandardOpenOption.READ);
+             FileChannel in2 = FileChannel.open(file2.toPath(), StandardOpenOption.READ)) {
+            long size = in1.size();
+            if (size != in2.size()) {
+                return false;
+            }
+            List<Callable<Boolean>> tasks = new ArrayList<>();
+            for (long pos = 0; pos < size; pos += MAX_SEGMENT_SIZE) {
+                long from = pos;
+                long length = Math.min(MAX_SEGMENT_SIZE, size - pos);
+                tasks.add(() -> in1.map(FileChannel.MapMode.READ_ONLY, from, length)
+                        .equals(in2.map(FileChannel.MapMode.READ_ONLY, from, length)));
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(p);
+            try {
+                for (Future<Boolean> future : executor.invokeAll(tasks)) {
+                    if (!Tasks.await(future)) {
+                        return false;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } finally {
+                executor.shutdownNow();
+            }
+            return true;
+        }
+    }
+}
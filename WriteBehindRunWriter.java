@@ -0,0 +1,108 @@
+package main;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * writes a data run with double buffering: once the current block is full, it is handed to the underlying writer
+ * in the background while the next block is filled
+ */
+public class WriteBehindRunWriter implements RunWriter {
+    private final RunWriter out;
+    private final ExecutorService executor;
+    private int[] current;
+    private int[] flushing;
+    private int pos = 0;
+    // writes flushing, null if no write is in progress
+    private Future<?> pending;
+
+    /**
+     * @param out the underlying writer, which is closed together with this one
+     * @param blockSize in bytes
+     * @param executor runs the background writes
+     */
+    public WriteBehindRunWriter(RunWriter out, int blockSize, ExecutorService executor) {
+        this.out = out;
+        this.executor = executor;
+        current = new int[blockSize / Integer.BYTES];
+        flushing = new int[current.length];
+    }
+
+    @Override
+    public void write(int element) throws IOException {
+        current[pos++] = element;
+        if (pos == current.length) {
+            flush();
+        }
+    }
+
+    @Override
+    public void write(int[] a, int from, int n) throws IOException {
+        while (n > 0) {
+            int length = Math.min(n, current.length - pos);
+            System.arraycopy(a, from, current, pos, length);
+            pos += length;
+            from += length;
+            n -= length;
+            if (pos == current.length) {
+                flush();
+            }
+        }
+    }
+
+    @Override
+    public long endRun() throws IOException {
+        if (pos > 0) {
+            flush();
+        }
+        awaitPending();
+        return out.endRun();
+    }
+
+    @Override
+    public void sync() throws IOException {
+        if (pos > 0) {
+            flush();
+        }
+        awaitPending();
+        out.sync();
+    }
+
+    /**
+     * waits until the previous block is written and starts writing the current one
+     * @throws IOException
+     */
+    private void flush() throws IOException {
+        awaitPending();
+        int[] buf = current;
+        int length = pos;
+        pending = executor.submit(() -> {
+            out.write(buf, 0, length);
+            return null;
+        });
+        current = flushing;
+        flushing = buf;
+        pos = 0;
+    }
+
+    private void awaitPending() throws IOException {
+        if (pending != null) {
+            Future<?> future = pending;
+            pending = null;
+            Tasks.await(future);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (pos > 0) {
+                flush();
+            }
+            awaitPending();
+        } finally {
+            out.close();
+        }
+    }
+}